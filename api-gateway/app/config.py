@@ -24,6 +24,9 @@ class Settings(BaseSettings):
     RABBITMQ_VHOST: str
     RABBITMQ_EXCHANGE: str
     RABBITMQ_EXCHANGE_TYPE: str
+    # Push notifications at or above this priority are published to the high lane
+    # (push.high); keep it equal to push-service's app.push.lanes.high-priority
+    PUSH_HIGH_PRIORITY: int = 4
     
     # Redis Configuration
     REDIS_HOST: str
@@ -93,6 +93,7 @@ class NotificationStatus(str, Enum):
     delivered = "delivered"
     pending = "pending"
     failed = "failed"
+    superseded = "superseded"  # replaced by a newer notification with the same collapse key
 
 class StatusUpdateRequest(BaseModel):
     """Request model for updating notification status (from Email/Push services)"""
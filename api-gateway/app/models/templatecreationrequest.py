@@ -12,6 +12,8 @@ class TemplateCreationRequest(BaseModel):
     body_template: str = Field(..., alias="bodyTemplate")
     type: str
     version: int
+    # False for personalized templates, whose rendered output template-service should not cache
+    cache_rendered: Optional[bool] = Field(None, alias="cacheRendered")
 
     class Config:
         populate_by_name = True
@@ -5,6 +5,7 @@ import uuid
 import json
 import logging
 
+from app.config import settings
 from app.utils import rabbitmq_publisher, rate_limiter, redis_client, auth_handler, circuit_breaker
 
 logging.basicConfig(level=logging.INFO)
@@ -92,8 +93,12 @@ async def send_notification(
             "retry_count": 0
         }
         
-        # 6. Route to appropriate queue based on notification type
-        routing_key = f"notification.{request.notification_type}"
+        # 6. Route to appropriate queue based on notification type; urgent pushes go
+        # straight to push-service's high lane instead of queueing behind bulk traffic
+        if request.notification_type == "push" and request.priority >= settings.PUSH_HIGH_PRIORITY:
+            routing_key = "push.high"
+        else:
+            routing_key = f"notification.{request.notification_type}"
         
         # 7. Publish to RabbitMQ with circuit breaker
         try:
@@ -216,7 +221,7 @@ async def update_notification_status(
     
     Request body:
     - notification_id: str
-    - status: delivered | pending | failed
+    - status: delivered | pending | failed | superseded
     - timestamp: Optional[datetime]
     - error: Optional[str]
     """
@@ -63,6 +63,42 @@ async def create_template(request: TemplateCreationRequest,
         logger.error(f"Error during template creation proxy: {str(e)}")
         raise HTTPException(status_code=500, detail="Internal server error")
 
+@router.put(
+    "/api/v1/templates/{template_code}",
+    response_model=StandardResponse,
+    summary="Update Template"
+)
+async def update_template(request: TemplateCreationRequest,
+                          template_code: str = Path(..., description="Code of the template to update")):
+    """
+    Proxies a template update to the Template Service, which bumps the template's
+    version and refreshes its cache.
+    """
+
+    template_service_url = f"{settings.TEMPLATE_SERVICE_URL}/api/v1/templates/{template_code}"
+
+    try:
+        async with httpx.AsyncClient() as client:
+            response = await client.put(
+                template_service_url,
+                json=request.model_dump(by_alias=True)
+            )
+
+        response.raise_for_status()
+
+        return StandardResponse(
+            success=True,
+            data=response.json(),
+            message="Template updated successfully by Template Service"
+        )
+
+    except httpx.HTTPStatusError as exc:
+        logger.error(f"HTTP error calling Template Service: {exc}")
+        raise HTTPException(status_code=exc.response.status_code, detail="Template update failed.")
+    except Exception as e:
+        logger.error(f"Error during template update proxy: {str(e)}")
+        raise HTTPException(status_code=500, detail="Internal server error")
+
 # The existing GET /api/v1/templates function goes here...
 # Endpoint the Push/Email services will call to get the *rendered* template
 @router.post(
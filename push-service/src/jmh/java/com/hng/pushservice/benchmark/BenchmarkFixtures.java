@@ -0,0 +1,232 @@
+package com.hng.pushservice.benchmark;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+import com.hng.pushservice.config.CollapseProperties;
+import com.hng.pushservice.config.RetryProperties;
+import com.hng.pushservice.config.ScheduleProperties;
+import com.hng.pushservice.config.TemplateSyncProperties;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.dto.PushRequest;
+import com.hng.pushservice.http.CircuitBreaker;
+import com.hng.pushservice.http.DownstreamGuard;
+import com.hng.pushservice.services.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wires the push path the way the Spring context does, with every network dependency
+ * replaced by an in-process stub: Redis by an always-claimable JobStatusStore, user-service
+ * and template-service by canned HTTP responses behind the real RestTemplate and
+ * DownstreamGuard, and FCM by a mock HTTP transport under the real Firebase client.
+ */
+final class BenchmarkFixtures {
+
+    static final String JOB_JSON = """
+            {"notification_id":"5f0c6a3e-1b7d-4f0e-9a53-2d7c4c1e8b10",
+             "user_id":"8d2e4b61-3c55-4a0f-b7f5-0e9c2a71d4f3",
+             "template_code":"order_shipped",
+             "variables":{"name":"Ada","link":"https://example.com/orders/1042","meta":"{}"},
+             "priority":2,
+             "timestamp":"2026-01-01T12:00:00.000000"}
+            """;
+
+    private static final String USER_JSON = """
+            {"success":true,"message":"User retrieved",
+             "data":{"id":"8d2e4b61-3c55-4a0f-b7f5-0e9c2a71d4f3","name":"Ada","email":"ada@example.com",
+                     "push_token":"%s",
+                     "preferences":{"email_notifications":true,"push_notifications":true}},
+             "meta":{}}
+            """.formatted(deviceToken());
+
+    private static final String RENDER_JSON = """
+            {"success":true,"message":"Template rendered successfully",
+             "data":{"rendered_subject":"Your order has shipped, Ada",
+                     "rendered_body":"Order 1042 is on its way. Track it at https://example.com/orders/1042",
+                     "rendered_image_url":"https://example.com/img/box.png",
+                     "rendered_action_link":"https://example.com/orders/1042"},
+             "meta":{}}
+            """;
+
+    private static final String FCM_RESPONSE = "{\"name\":\"projects/push-bench/messages/0:1700000000000000%0\"}";
+
+    private BenchmarkFixtures() {
+    }
+
+    static JobRequestDto job() {
+        JobRequestDto job = new JobRequestDto();
+        job.setNotificationId("5f0c6a3e-1b7d-4f0e-9a53-2d7c4c1e8b10");
+        job.setUserId("8d2e4b61-3c55-4a0f-b7f5-0e9c2a71d4f3");
+        job.setTemplateCode("order_shipped");
+        job.setVariables(Map.of("name", "Ada", "link", "https://example.com/orders/1042"));
+        job.setPriority(2);
+        job.setTimestamp("2026-01-01T12:00:00.000000");
+        return job;
+    }
+
+    static PushRequest pushRequest() {
+        PushRequest request = new PushRequest();
+        request.setDeviceToken(deviceToken());
+        request.setNotificationId("5f0c6a3e-1b7d-4f0e-9a53-2d7c4c1e8b10");
+        request.setUserId("8d2e4b61-3c55-4a0f-b7f5-0e9c2a71d4f3");
+        request.setTitle("Your order has shipped, Ada");
+        request.setBody("Order 1042 is on its way. Track it at https://example.com/orders/1042");
+        request.setImageUrl("https://example.com/img/box.png");
+        request.setActionLink("https://example.com/orders/1042");
+        return request;
+    }
+
+    static FcmService fcmService(MeterRegistry meterRegistry, PushMetrics metrics) {
+        ListenerPauseControl pauseControl = new ListenerPauseControl(null);
+        FcmRateLimiter rateLimiter = new FcmRateLimiter(pauseControl, meterRegistry, true, 32, 1, 500, 0.5,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        return new FcmService(rateLimiter, metrics);
+    }
+
+    /** The single-mode listener with all of its collaborators, as the context would build it. */
+    static PushMessageServiceReceiver receiver(boolean userCacheEnabled) {
+        initFirebase();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PushMetrics metrics = new PushMetrics(meterRegistry);
+
+        UserServiceClient userServiceClient = new UserServiceClient(stubRestTemplate("user-service", USER_JSON, meterRegistry));
+        ReflectionTestUtils.setField(userServiceClient, "userServiceUrl", "http://user-service/api/v1/users/");
+        UserProfileCache userProfileCache = new UserProfileCache(userServiceClient, meterRegistry,
+                userCacheEnabled, 100_000, Duration.ofMinutes(1));
+
+        TemplateServiceClient templateServiceClient = new TemplateServiceClient(
+                stubRestTemplate("template-service", RENDER_JSON, meterRegistry));
+        ReflectionTestUtils.setField(templateServiceClient, "templateServiceUrl", "http://template-service/api/v1/templates/render");
+
+        // Template sync off: every job is rendered by the stubbed template-service, as before
+        TemplateSyncProperties templateSync = new TemplateSyncProperties();
+        templateSync.setEnabled(false);
+        PushJobProcessor processor = new PushJobProcessor(
+                new InMemoryJobStatusStore(meterRegistry),
+                new TemplateStore(templateServiceClient, meterRegistry, templateSync),
+                userProfileCache,
+                new DiscardingStatusReporter(),
+                new PushRetryPublisher(null, new RetryProperties()),
+                fcmService(meterRegistry, metrics),
+                new DeadTokenRegistry(null, meterRegistry, false, Duration.ofDays(30), 1, Duration.ofMinutes(1)),
+                userServiceClient,
+                metrics);
+
+        // Scheduling and collapsing disabled: the jobs carry no send_at or collapse_key anyway
+        ScheduledDelivery scheduledDelivery = new ScheduledDelivery(null, null, null, null, meterRegistry, new ScheduleProperties());
+        CollapseBuffer collapseBuffer = new CollapseBuffer(null, null, null, null, metrics, null, meterRegistry, new CollapseProperties());
+        return new PushMessageServiceReceiver(processor, new PushLaneMetrics(null, meterRegistry, Duration.ofMinutes(1)),
+                scheduledDelivery, collapseBuffer);
+    }
+
+    static synchronized void initFirebase() {
+        if (!FirebaseApp.getApps().isEmpty()) {
+            return;
+        }
+        MockHttpTransport transport = new MockHttpTransport() {
+            @Override
+            public LowLevelHttpRequest buildRequest(String method, String url) {
+                return new MockLowLevelHttpRequest(url) {
+                    @Override
+                    public LowLevelHttpResponse execute() {
+                        return new MockLowLevelHttpResponse()
+                                .setContentType(Json.MEDIA_TYPE)
+                                .setContent(FCM_RESPONSE);
+                    }
+                };
+            }
+        };
+        AccessToken token = new AccessToken("bench-token", new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.create(token))
+                .setProjectId("push-bench")
+                .setHttpTransport(transport)
+                .build());
+    }
+
+    private static RestTemplate stubRestTemplate(String name, String responseJson, MeterRegistry meterRegistry) {
+        byte[] body = responseJson.getBytes(StandardCharsets.UTF_8);
+        RestTemplate restTemplate = new RestTemplate((uri, method) -> {
+            MockClientHttpResponse response = new MockClientHttpResponse(body, HttpStatus.OK);
+            response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            MockClientHttpRequest request = new MockClientHttpRequest(method, uri);
+            request.setResponse(response);
+            return request;
+        });
+        restTemplate.getInterceptors().add(new DownstreamGuard(name, 64, Duration.ofMillis(200),
+                new CircuitBreaker(name, 10, 30_000), meterRegistry));
+        return restTemplate;
+    }
+
+    private static String deviceToken() {
+        return "dQw4w9WgXcQ:APA91bH" + "x".repeat(140);
+    }
+
+    /** Every job is new: claims always succeed and final statuses are dropped. */
+    private static class InMemoryJobStatusStore extends JobStatusStore {
+
+        InMemoryJobStatusStore(MeterRegistry meterRegistry) {
+            super(null, meterRegistry, Duration.ofSeconds(60), Duration.ofHours(24), Layout.KEYS,
+                    Duration.ofHours(1), 1024, 1);
+        }
+
+        @Override
+        public ClaimResult claim(String notificationId) {
+            return ClaimResult.CLAIMED;
+        }
+
+        @Override
+        public List<ClaimResult> claimAll(List<String> notificationIds) {
+            return notificationIds.stream().map(this::claim).toList();
+        }
+
+        @Override
+        public void extend(String notificationId) {
+        }
+
+        @Override
+        public void extendAll(Collection<String> notificationIds) {
+        }
+
+        @Override
+        public void release(String notificationId) {
+        }
+
+        @Override
+        public void finishAll(Map<String, String> statusesById) {
+        }
+    }
+
+    private static class DiscardingStatusReporter extends StatusReporter {
+
+        DiscardingStatusReporter() {
+            super(null, null, 1);
+        }
+
+        @Override
+        public void report(String notificationId, String status, String error) {
+        }
+    }
+}
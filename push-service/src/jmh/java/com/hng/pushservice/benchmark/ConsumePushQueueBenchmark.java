@@ -0,0 +1,39 @@
+package com.hng.pushservice.benchmark;
+
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.services.PushMessageServiceReceiver;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole single-mode listener body for one job: claim, user lookup, render call,
+ * FCM send through the Firebase client and status bookkeeping. Network calls are answered
+ * in-process (see BenchmarkFixtures), so this measures what the service itself spends per
+ * job. Run with -prof gc to see the allocation rate per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsumePushQueueBenchmark {
+
+    @Param({"true", "false"})
+    public boolean userCache;
+
+    private PushMessageServiceReceiver receiver;
+    private JobRequestDto job;
+
+    @Setup
+    public void setUp() {
+        receiver = BenchmarkFixtures.receiver(userCache);
+        job = BenchmarkFixtures.job();
+    }
+
+    @Benchmark
+    public void consumePushQueue() {
+        receiver.consumePushQueue(job, 1);
+    }
+}
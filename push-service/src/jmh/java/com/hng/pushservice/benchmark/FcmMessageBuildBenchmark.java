@@ -0,0 +1,38 @@
+package com.hng.pushservice.benchmark;
+
+import com.google.firebase.messaging.Message;
+import com.hng.pushservice.dto.PushRequest;
+import com.hng.pushservice.services.FcmService;
+import com.hng.pushservice.services.PushMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the FCM Message (notification, data map and Android/APNs overrides)
+ * from a rendered PushRequest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FcmMessageBuildBenchmark {
+
+    private FcmService fcmService;
+    private PushRequest request;
+
+    @Setup
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        fcmService = BenchmarkFixtures.fcmService(meterRegistry, new PushMetrics(meterRegistry));
+        request = BenchmarkFixtures.pushRequest();
+    }
+
+    @Benchmark
+    public Message buildMessage() {
+        return fcmService.buildMessage(request);
+    }
+}
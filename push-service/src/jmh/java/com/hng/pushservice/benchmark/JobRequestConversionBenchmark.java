@@ -0,0 +1,40 @@
+package com.hng.pushservice.benchmark;
+
+import com.hng.pushservice.dto.JobRequestDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a RabbitMQ delivery into a JobRequestDto, as the listener adapter does
+ * with the converter from RabbitMQConfig before consumePushQueue is invoked.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JobRequestConversionBenchmark {
+
+    private Jackson2JsonMessageConverter converter;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        converter = new Jackson2JsonMessageConverter();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        properties.setInferredArgumentType(JobRequestDto.class);
+        message = new Message(BenchmarkFixtures.JOB_JSON.getBytes(StandardCharsets.UTF_8), properties);
+    }
+
+    @Benchmark
+    public Object fromMessage() {
+        return converter.fromMessage(message);
+    }
+}
@@ -0,0 +1,111 @@
+package com.hng.pushservice.loadtest;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.Json;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.auth.oauth2.AccessToken;
+import com.google.auth.oauth2.GoogleCredentials;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.FirebaseOptions;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * FCM stand-in at the HTTP transport of the Firebase client, so FcmService, the send
+ * limiter and the error classification all run as in production. Each send waits for the
+ * configured latency; with probability errorRate it fails with the given FCM error code
+ * (INTERNAL by default, which the service treats as throttling).
+ */
+final class FakeFcmTransport extends MockHttpTransport {
+
+    /** FCM error code to the HTTP status and canonical error status FCM answers with. */
+    private static final Map<String, ErrorResponse> ERRORS = Map.of(
+            "INVALID_ARGUMENT", new ErrorResponse(400, "INVALID_ARGUMENT"),
+            "THIRD_PARTY_AUTH_ERROR", new ErrorResponse(401, "UNAUTHENTICATED"),
+            "SENDER_ID_MISMATCH", new ErrorResponse(403, "PERMISSION_DENIED"),
+            "UNREGISTERED", new ErrorResponse(404, "NOT_FOUND"),
+            "QUOTA_EXCEEDED", new ErrorResponse(429, "RESOURCE_EXHAUSTED"),
+            "INTERNAL", new ErrorResponse(500, "INTERNAL"),
+            "UNAVAILABLE", new ErrorResponse(503, "UNAVAILABLE"));
+
+    private record ErrorResponse(int httpStatus, String status) {
+    }
+
+    private final Duration latency;
+    private final double errorRate;
+    private final String errorCode;
+    private final AtomicLong sends = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    FakeFcmTransport(Duration latency, double errorRate, String errorCode) {
+        if (!ERRORS.containsKey(errorCode)) {
+            throw new IllegalArgumentException("Unsupported FCM error code " + errorCode + ", expected one of " + ERRORS.keySet());
+        }
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.errorCode = errorCode;
+    }
+
+    /** Points the default FirebaseApp at this transport; FirebaseConfig then reuses it. */
+    void install() {
+        if (!FirebaseApp.getApps().isEmpty()) {
+            throw new IllegalStateException("FirebaseApp is already initialized");
+        }
+        AccessToken token = new AccessToken("load-test", new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        FirebaseApp.initializeApp(FirebaseOptions.builder()
+                .setCredentials(GoogleCredentials.create(token))
+                .setProjectId("push-load-test")
+                .setHttpTransport(this)
+                .build());
+    }
+
+    long getSends() {
+        return sends.get();
+    }
+
+    long getFailures() {
+        return failures.get();
+    }
+
+    String describe() {
+        return "fcm latency=" + latency.toMillis() + "ms errors=" + errorRate + " (" + errorCode + ")";
+    }
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url) {
+            @Override
+            public LowLevelHttpResponse execute() {
+                long id = sends.incrementAndGet();
+                StubHttpServer.sleep(latency);
+                if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    failures.incrementAndGet();
+                    return error();
+                }
+                return new MockLowLevelHttpResponse()
+                        .setContentType(Json.MEDIA_TYPE)
+                        .setContent("{\"name\":\"projects/push-load-test/messages/" + id + "\"}");
+            }
+        };
+    }
+
+    private LowLevelHttpResponse error() {
+        ErrorResponse error = ERRORS.get(errorCode);
+        String body = """
+                {"error":{"code":%d,"message":"Injected %s","status":"%s",
+                 "details":[{"@type":"type.googleapis.com/google.firebase.fcm.v1.FcmError","errorCode":"%s"}]}}
+                """.formatted(error.httpStatus(), errorCode, error.status(), errorCode);
+        return new MockLowLevelHttpResponse()
+                .setStatusCode(error.httpStatus())
+                .setContentType(Json.MEDIA_TYPE)
+                .setContent(body);
+    }
+}
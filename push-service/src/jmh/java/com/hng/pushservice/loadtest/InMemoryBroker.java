@@ -0,0 +1,199 @@
+package com.hng.pushservice.loadtest;
+
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.services.PushRetryPublisher;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * In-memory stand-in for RabbitMQ in single consumer mode: one FIFO queue per lane, and
+ * consumers that behave like a listener container with basic.qos prefetch. Each consumer
+ * holds at most prefetch unacked deliveries; an ack only frees its slot after brokerRtt,
+ * the time for the ack to reach the broker and the next delivery to come back, which is
+ * what a larger prefetch hides.
+ *
+ * The RabbitTemplate it hands out replaces the real one: publishes to a retry queue
+ * (push.queue.retry.10s and so on) come back onto their lane after the queue's delay, with
+ * the attempt header, as the TTL and dead-lettering would do.
+ */
+final class InMemoryBroker {
+
+    record Delivery(JobRequestDto job, int attempt) {
+    }
+
+    private final Map<PushLane, BlockingQueue<Delivery>> queues = new EnumMap<>(PushLane.class);
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+    private final ThreadLocal<Boolean> retried = ThreadLocal.withInitial(() -> false);
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile long generation;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, task -> {
+        Thread thread = new Thread(task, "broker-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    InMemoryBroker() {
+        for (PushLane lane : PushLane.values()) {
+            queues.put(lane, new LinkedBlockingQueue<>());
+        }
+    }
+
+    void publish(PushLane lane, JobRequestDto job, int attempt) {
+        queues.get(lane).add(new Delivery(job, attempt));
+    }
+
+    int depth(PushLane lane) {
+        return queues.get(lane).size();
+    }
+
+    /** Drops every queued delivery and pending retry, e.g. between two runs of a sweep. */
+    void purge() {
+        generation++;
+        queues.values().forEach(BlockingQueue::clear);
+    }
+
+    /**
+     * Whether the delivery the calling consumer thread is handling was handed to a retry
+     * queue. Reset on every delivery.
+     */
+    boolean wasRetried() {
+        return retried.get();
+    }
+
+    /**
+     * Starts consumers on a lane. The listener handles each delivery; settled is then told
+     * whether it was acked, since a listener exception means a reject without requeue.
+     */
+    void startConsumers(PushLane lane, int concurrency, int prefetch, Duration brokerRtt,
+                        Consumer<Delivery> listener, BiConsumer<Delivery, Boolean> settled) {
+        for (int i = 0; i < concurrency; i++) {
+            Semaphore unacked = new Semaphore(prefetch);
+            BlockingQueue<Delivery> prefetched = new LinkedBlockingQueue<>();
+
+            Thread fetcher = daemon("broker-" + lane.tag() + "-deliver-" + i, () -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    unacked.acquire();
+                    prefetched.put(queues.get(lane).take());
+                }
+            });
+            Thread consumer = daemon("broker-" + lane.tag() + "-consumer-" + i, () -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Delivery delivery = prefetched.take();
+                    retried.set(false);
+                    boolean acked;
+                    try {
+                        listener.accept(delivery);
+                        acked = true;
+                    } catch (RuntimeException e) {
+                        acked = false;
+                    }
+                    settled.accept(delivery, acked);
+                    if (brokerRtt.isZero()) {
+                        unacked.release();
+                    } else {
+                        scheduler.schedule((Runnable) unacked::release, brokerRtt.toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            });
+            threads.add(fetcher);
+            threads.add(consumer);
+        }
+    }
+
+    void stopConsumers() {
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    RabbitTemplate rabbitTemplate() {
+        // The connection factory is never used, send() is the only way out of the template;
+        // routing is synchronous, so every publish counts as confirmed
+        RabbitTemplate template = new RabbitTemplate(new CachingConnectionFactory()) {
+            @Override
+            public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+                route(exchange, routingKey, message);
+            }
+
+            @Override
+            public <T> T invoke(OperationsCallback<T> action, com.rabbitmq.client.ConfirmCallback acks,
+                                com.rabbitmq.client.ConfirmCallback nacks) {
+                return action.doInRabbit(this);
+            }
+
+            @Override
+            public void waitForConfirmsOrDie(long timeout) {
+            }
+        };
+        template.setMessageConverter(converter);
+        return template;
+    }
+
+    private void route(String exchange, String routingKey, Message message) {
+        message.getMessageProperties().setInferredArgumentType(JobRequestDto.class);
+        JobRequestDto job = (JobRequestDto) converter.fromMessage(message);
+        int attempt = PushRetryPublisher.attemptOf(message);
+
+        for (PushLane lane : PushLane.values()) {
+            String retryPrefix = lane.getQueue() + ".retry.";
+            if (exchange.isEmpty() && routingKey.startsWith(retryPrefix)) {
+                // The inverse of RabbitMQConfig.pushRetryQueue: push.queue.retry.10s waits PT10S
+                Duration delay = Duration.parse("PT" + routingKey.substring(retryPrefix.length()).toUpperCase());
+                retried.set(true);
+                long publishedIn = generation;
+                scheduler.schedule(() -> {
+                    if (generation == publishedIn) {
+                        publish(lane, job, attempt);
+                    }
+                }, delay.toMillis(), TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        for (PushLane lane : PushLane.values()) {
+            boolean direct = exchange.isEmpty() && lane.getQueue().equals(routingKey);
+            boolean routed = RabbitMQConfig.NOTIFICATIONS_DIRECT_EXCHANGE.equals(exchange) && lane.getRoutingKey().equals(routingKey);
+            if (direct || routed) {
+                publish(lane, job, attempt);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No in-memory queue for exchange '" + exchange + "', routing key " + routingKey);
+    }
+
+    private static Thread daemon(String name, InterruptibleTask task) {
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (InterruptedException ignored) {
+                // stopConsumers
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private interface InterruptibleTask {
+        void run() throws InterruptedException;
+    }
+}
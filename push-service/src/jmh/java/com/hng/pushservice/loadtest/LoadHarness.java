@@ -0,0 +1,364 @@
+package com.hng.pushservice.loadtest;
+
+import com.hng.pushservice.PushserviceApplication;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.services.PushMessageServiceReceiver;
+import com.hng.pushservice.services.PushPriorityReceiver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.amqp.rabbit.config.AbstractRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load harness: starts PushserviceApplication once per prefetch x concurrency
+ * combination against local stand-ins and reports sustained throughput and end-to-end
+ * latency (publish to the listener acking the job, retries included).
+ *
+ * <ul>
+ *   <li>RabbitMQ: {@link InMemoryBroker}, which drives the single-mode listeners directly.</li>
+ *   <li>Redis: an embedded redis-server, so the Lua scripts run for real.</li>
+ *   <li>user-service, template-service and the gateway: {@link StubHttpServer}s.</li>
+ *   <li>FCM: {@link FakeFcmTransport} under the real Firebase client.</li>
+ * </ul>
+ *
+ * Run with: mvn -P jmh test-compile exec:exec@load-test -Dload.args="--concurrency=4,16 --fcm-latency=50ms"
+ */
+public final class LoadHarness {
+
+    private static final String RENDER_JSON = """
+            {"success":true,"message":"Template rendered successfully",
+             "data":{"rendered_subject":"Your order has shipped",
+                     "rendered_body":"Order 1042 is on its way. Track it at https://example.com/orders/1042",
+                     "rendered_image_url":"https://example.com/img/box.png",
+                     "rendered_action_link":"https://example.com/orders/1042"},
+             "meta":{}}
+            """;
+
+    private final LoadSettings settings;
+    private final InMemoryBroker broker = new InMemoryBroker();
+
+    private LoadHarness(LoadSettings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.parse(args);
+        new LoadHarness(settings).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        FakeFcmTransport fcm = new FakeFcmTransport(settings.getFcmLatency(), settings.getFcmErrorRate(), settings.getFcmErrorCode());
+        fcm.install();
+
+        int redisPort = freePort();
+        RedisServer redis = RedisServer.newRedisServer().bind("127.0.0.1").port(redisPort).setting("save \"\"").build();
+        redis.start();
+        try (StubHttpServer users = new StubHttpServer("user-service", settings.getUserLatency(), settings.getUserErrorRate(), LoadHarness::userJson);
+             StubHttpServer templates = new StubHttpServer("template-service", settings.getTemplateLatency(), settings.getTemplateErrorRate(), path -> RENDER_JSON);
+             StubHttpServer gateway = new StubHttpServer("gateway", settings.getGatewayLatency(), settings.getGatewayErrorRate(), path -> "{\"success\":true}")) {
+
+            System.out.printf("Stand-ins: %s; %s; %s; %s; broker rtt=%dms%n", users.describe(), templates.describe(),
+                    gateway.describe(), fcm.describe(), settings.getBrokerRtt().toMillis());
+
+            Map<String, String> properties = new LinkedHashMap<>();
+            properties.put("spring.data.redis.host", "127.0.0.1");
+            properties.put("spring.data.redis.port", String.valueOf(redisPort));
+            properties.put("app.user-service.url", users.baseUrl() + "/api/v1/users/");
+            properties.put("app.template-service.url", templates.baseUrl() + "/api/v1/templates/render");
+            properties.put("app.status-update.url", gateway.baseUrl() + "/api/v1/push/status/");
+            properties.put("app.push.consumer.mode", "single");
+            // Nothing to poll, and the in-memory broker cannot pause its consumers
+            properties.put("app.push.lanes.depth-poll-interval", "1h");
+            properties.put("app.push.fcm.limiter.pause-threshold", "1h");
+            // The sweep sets consumers and prefetch itself
+            properties.put("app.push.autoscale.enabled", "false");
+            // Each point would wait on a broker that is not there; --jvm-warmup covers the JIT
+            properties.put("app.push.startup.warm-up.enabled", "false");
+            // One line per job (and a stack trace per injected failure) would drown the report
+            properties.put("logging.level.com.hng.pushservice", "OFF");
+            properties.putAll(settings.getSpringProperties());
+
+            if (!settings.getJvmWarmup().isZero()) {
+                System.out.printf("JVM warmup for %ss%n", settings.getJvmWarmup().toSeconds());
+                runPoint(properties, settings.getPrefetch().get(0), Collections.max(settings.getConcurrency()), fcm,
+                        settings.getJvmWarmup(), Duration.ofSeconds(1));
+            }
+
+            List<Result> results = new ArrayList<>();
+            System.out.println(Result.HEADER);
+            for (int prefetch : settings.getPrefetch()) {
+                for (int concurrency : settings.getConcurrency()) {
+                    Result result = runPoint(properties, prefetch, concurrency, fcm, settings.getWarmup(), settings.getDuration());
+                    results.add(result);
+                    System.out.println(result.row());
+                }
+            }
+            report(results);
+        } finally {
+            redis.stop();
+        }
+    }
+
+    private Result runPoint(Map<String, String> baseProperties, int prefetch, int concurrency, FakeFcmTransport fcm,
+                            Duration warmup, Duration duration) {
+        Map<String, String> properties = new LinkedHashMap<>(baseProperties);
+        properties.put("app.push.lanes.normal.concurrency", String.valueOf(concurrency));
+        properties.put("app.push.lanes.high.concurrency", String.valueOf(settings.getHighConcurrency()));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(PushserviceApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .properties(toStrings(properties))
+                .initializers(ctx -> {
+                    GenericApplicationContext generic = (GenericApplicationContext) ctx;
+                    generic.registerBean("inMemoryRabbitTemplate", RabbitTemplate.class, broker::rabbitTemplate,
+                            definition -> definition.setPrimary(true));
+                    // The listener containers would only try to reach a real broker
+                    generic.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                        @Override
+                        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                            if (bean instanceof AbstractRabbitListenerContainerFactory<?> factory) {
+                                factory.setAutoStartup(false);
+                            }
+                            return bean;
+                        }
+                    });
+                })
+                .run();
+        try {
+            Point point = new Point(prefetch, concurrency, context.getBean(MeterRegistry.class), fcm);
+            PushMessageServiceReceiver normal = context.getBean(PushMessageServiceReceiver.class);
+            PushPriorityReceiver high = context.getBean(PushPriorityReceiver.class);
+            broker.startConsumers(PushLane.NORMAL, concurrency, prefetch, settings.getBrokerRtt(),
+                    delivery -> normal.consumePushQueue(delivery.job(), delivery.attempt()), point::settled);
+            broker.startConsumers(PushLane.HIGH, settings.getHighConcurrency(), prefetch, settings.getBrokerRtt(),
+                    delivery -> high.consumeHighPriorityQueue(delivery.job(), delivery.attempt()), point::settled);
+            return point.drive(warmup, duration);
+        } finally {
+            broker.stopConsumers();
+            broker.purge();
+            context.getBean(StringRedisTemplate.class).execute(connection -> {
+                connection.serverCommands().flushAll();
+                return null;
+            }, true);
+            context.close();
+        }
+    }
+
+    /** One prefetch x concurrency combination: publishes for warmup + duration and measures the second part. */
+    private final class Point {
+
+        private final int prefetch;
+        private final int concurrency;
+        private final MeterRegistry meterRegistry;
+        private final FakeFcmTransport fcm;
+        private final Map<String, Long> publishedAt = new ConcurrentHashMap<>();
+        private final Semaphore outstanding;
+        private final Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(10), 3);
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong deadLettered = new AtomicLong();
+        private volatile boolean measuring;
+
+        Point(int prefetch, int concurrency, MeterRegistry meterRegistry, FakeFcmTransport fcm) {
+            this.prefetch = prefetch;
+            this.concurrency = concurrency;
+            this.meterRegistry = meterRegistry;
+            this.fcm = fcm;
+            this.outstanding = new Semaphore(settings.inFlightFor(concurrency, prefetch));
+        }
+
+        void settled(InMemoryBroker.Delivery delivery, boolean acked) {
+            if (acked && broker.wasRetried()) {
+                return;
+            }
+            Long start = publishedAt.remove(delivery.job().getNotificationId());
+            if (start == null) {
+                return;
+            }
+            outstanding.release();
+            if (!measuring) {
+                return;
+            }
+            if (acked) {
+                latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                        latencies.getHighestTrackableValue()));
+                completed.incrementAndGet();
+            } else {
+                deadLettered.incrementAndGet();
+            }
+        }
+
+        Result drive(Duration warmup, Duration duration) {
+            long startedAt = System.nanoTime();
+            long measureFrom = startedAt + warmup.toNanos();
+            long end = measureFrom + duration.toNanos();
+            long interval = settings.getRate() > 0 ? TimeUnit.SECONDS.toNanos(1) / settings.getRate() : 0;
+            long nextAt = startedAt;
+
+            Map<String, Double> outcomesBefore = null;
+            long fcmSendsBefore = 0;
+            long fcmFailuresBefore = 0;
+            long now;
+            while ((now = System.nanoTime()) < end) {
+                if (!measuring && now >= measureFrom) {
+                    outcomesBefore = outcomes();
+                    fcmSendsBefore = fcm.getSends();
+                    fcmFailuresBefore = fcm.getFailures();
+                    measuring = true;
+                }
+                if (interval > 0) {
+                    // Open loop: offered load does not back off when the service falls behind
+                    if (now < nextAt) {
+                        LockSupport.parkNanos(nextAt - now);
+                        continue;
+                    }
+                    nextAt += interval;
+                } else if (!tryAcquire()) {
+                    continue;
+                }
+                publish();
+            }
+            measuring = false;
+
+            Map<String, Double> outcomesAfter = outcomes();
+            Map<String, Long> outcomeCounts = new TreeMap<>();
+            Map<String, Double> before = outcomesBefore;
+            outcomesAfter.forEach((outcome, count) ->
+                    outcomeCounts.put(outcome, Math.round(count - (before == null ? 0 : before.getOrDefault(outcome, 0.0)))));
+
+            double seconds = duration.toNanos() / 1e9;
+            return new Result(prefetch, concurrency, completed.get() / seconds,
+                    latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0,
+                    completed.get(), deadLettered.get(), outcomeCounts,
+                    fcm.getSends() - fcmSendsBefore, fcm.getFailures() - fcmFailuresBefore,
+                    broker.depth(PushLane.NORMAL));
+        }
+
+        private boolean tryAcquire() {
+            try {
+                return outstanding.tryAcquire(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void publish() {
+            JobRequestDto job = new JobRequestDto();
+            job.setNotificationId(UUID.randomUUID().toString());
+            job.setUserId(userId(ThreadLocalRandom.current().nextInt(settings.getUsers())));
+            job.setTemplateCode("order_shipped");
+            job.setVariables(Map.of("name", "Ada", "link", "https://example.com/orders/1042"));
+            job.setPriority(2);
+            job.setTimestamp(LocalDateTime.now(ZoneOffset.UTC).toString());
+            publishedAt.put(job.getNotificationId(), System.nanoTime());
+            broker.publish(PushLane.NORMAL, job, 1);
+        }
+
+        private Map<String, Double> outcomes() {
+            Map<String, Double> counts = new HashMap<>();
+            for (Counter counter : meterRegistry.find("push.jobs").counters()) {
+                counts.put(counter.getId().getTag("outcome"), counter.count());
+            }
+            return counts;
+        }
+    }
+
+    record Result(int prefetch, int concurrency, double throughput, double p50, double p99, double p999,
+                  long completed, long deadLettered, Map<String, Long> outcomes,
+                  long fcmSends, long fcmFailures, int backlog) {
+
+        static final String HEADER = String.format("%8s %11s %10s %9s %9s %9s %9s %9s %7s  %s",
+                "prefetch", "concurrency", "jobs/s", "p50 ms", "p99 ms", "p999 ms", "done", "dlq", "backlog", "outcomes");
+
+        String row() {
+            return String.format("%8d %11d %10.1f %9.2f %9.2f %9.2f %9d %9d %7d  %s",
+                    prefetch, concurrency, throughput, p50, p99, p999, completed, deadLettered, backlog, outcomes);
+        }
+
+        String csv() {
+            return String.join(",", String.valueOf(prefetch), String.valueOf(concurrency),
+                    String.format("%.1f", throughput), String.format("%.3f", p50), String.format("%.3f", p99),
+                    String.format("%.3f", p999), String.valueOf(completed), String.valueOf(deadLettered),
+                    String.valueOf(outcomes.getOrDefault("delivered", 0L)),
+                    String.valueOf(outcomes.getOrDefault("failed", 0L)),
+                    String.valueOf(outcomes.getOrDefault("skipped", 0L)),
+                    String.valueOf(outcomes.getOrDefault("retried", 0L)),
+                    String.valueOf(fcmSends), String.valueOf(fcmFailures), String.valueOf(backlog));
+        }
+    }
+
+    private void report(List<Result> results) throws IOException {
+        System.out.println();
+        System.out.printf("Warmup %ss, measured %ss, %s%n", settings.getWarmup().toSeconds(), settings.getDuration().toSeconds(),
+                settings.getRate() > 0 ? "open loop at " + settings.getRate() + " jobs/s" : "closed loop");
+        System.out.println(Result.HEADER);
+        results.forEach(result -> System.out.println(result.row()));
+
+        Path output = Path.of(settings.getOutput());
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output))) {
+            writer.println("prefetch,concurrency,jobs_per_s,p50_ms,p99_ms,p999_ms,completed,dead_lettered,"
+                    + "delivered,failed,skipped,retried,fcm_sends,fcm_failures,backlog");
+            results.forEach(result -> writer.println(result.csv()));
+        }
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+
+    private static String userJson(String path) {
+        String userId = path.substring(path.lastIndexOf('/') + 1);
+        return """
+                {"success":true,"message":"User retrieved",
+                 "data":{"id":"%s","name":"Load Test","email":"load@example.com",
+                         "push_token":"load-token-%s",
+                         "preferences":{"email_notifications":true,"push_notifications":true}},
+                 "meta":{}}
+                """.formatted(userId, userId);
+    }
+
+    private static String userId(int n) {
+        return String.format("00000000-0000-4000-8000-%012d", n);
+    }
+
+    private static String[] toStrings(Map<String, String> properties) {
+        return properties.entrySet().stream().map(e -> e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.hng.pushservice.loadtest;
+
+import lombok.Data;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Harness options, given as --name=value. Anything with a dot in its name (for example
+ * --app.push.user-cache.enabled=false) is passed to the service as a Spring property.
+ */
+@Data
+class LoadSettings {
+
+    /** Prefetch values to sweep; each consumer holds at most this many unacked jobs. */
+    private List<Integer> prefetch = List.of(1, 10, 50);
+
+    /** Normal-lane consumer counts to sweep, as app.push.lanes.normal.concurrency. */
+    private List<Integer> concurrency = List.of(1, 4, 16);
+
+    /** Consumers on the high lane, which only sees retries of high-priority jobs here. */
+    private int highConcurrency = 4;
+
+    /** One unreported run before the sweep, so the first points are not measured on a cold JIT. */
+    private Duration jvmWarmup = Duration.ofSeconds(20);
+
+    /** Per point, after the service has started; covers cache fill and limiter ramp-up. */
+    private Duration warmup = Duration.ofSeconds(10);
+    private Duration duration = Duration.ofSeconds(30);
+
+    /** Offered load in jobs per second; 0 keeps inFlight jobs outstanding instead (closed loop). */
+    private int rate = 0;
+
+    /** Closed loop only; 0 means twice what the consumers can hold (concurrency x prefetch x 2). */
+    private int inFlight = 0;
+
+    /** Ack-to-next-delivery round trip to the broker. */
+    private Duration brokerRtt = Duration.ofMillis(1);
+
+    /** Distinct users the jobs are spread over; decides the user cache hit ratio. */
+    private int users = 10_000;
+
+    private Duration userLatency = Duration.ofMillis(5);
+    private double userErrorRate = 0;
+    private Duration templateLatency = Duration.ofMillis(5);
+    private double templateErrorRate = 0;
+    private Duration gatewayLatency = Duration.ofMillis(5);
+    private double gatewayErrorRate = 0;
+    private Duration fcmLatency = Duration.ofMillis(20);
+    private double fcmErrorRate = 0;
+    private String fcmErrorCode = "INTERNAL";
+
+    private String output = "target/load-results.csv";
+
+    private Map<String, String> springProperties = new LinkedHashMap<>();
+
+    static LoadSettings parse(String[] args) {
+        LoadSettings settings = new LoadSettings();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            if (name.contains(".")) {
+                settings.springProperties.put(name, value);
+                continue;
+            }
+            switch (name) {
+                case "prefetch" -> settings.prefetch = intList(value);
+                case "concurrency" -> settings.concurrency = intList(value);
+                case "high-concurrency" -> settings.highConcurrency = Integer.parseInt(value);
+                case "jvm-warmup" -> settings.jvmWarmup = DurationStyle.detectAndParse(value);
+                case "warmup" -> settings.warmup = DurationStyle.detectAndParse(value);
+                case "duration" -> settings.duration = DurationStyle.detectAndParse(value);
+                case "rate" -> settings.rate = Integer.parseInt(value);
+                case "in-flight" -> settings.inFlight = Integer.parseInt(value);
+                case "broker-rtt" -> settings.brokerRtt = DurationStyle.detectAndParse(value);
+                case "users" -> settings.users = Integer.parseInt(value);
+                case "user-latency" -> settings.userLatency = DurationStyle.detectAndParse(value);
+                case "user-error-rate" -> settings.userErrorRate = Double.parseDouble(value);
+                case "template-latency" -> settings.templateLatency = DurationStyle.detectAndParse(value);
+                case "template-error-rate" -> settings.templateErrorRate = Double.parseDouble(value);
+                case "gateway-latency" -> settings.gatewayLatency = DurationStyle.detectAndParse(value);
+                case "gateway-error-rate" -> settings.gatewayErrorRate = Double.parseDouble(value);
+                case "fcm-latency" -> settings.fcmLatency = DurationStyle.detectAndParse(value);
+                case "fcm-error-rate" -> settings.fcmErrorRate = Double.parseDouble(value);
+                case "fcm-error-code" -> settings.fcmErrorCode = value.toUpperCase();
+                case "output" -> settings.output = value;
+                default -> throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+        return settings;
+    }
+
+    int inFlightFor(int concurrency, int prefetch) {
+        return inFlight > 0 ? inFlight : concurrency * prefetch * 2;
+    }
+
+    private static List<Integer> intList(String value) {
+        return Arrays.stream(value.split(",")).map(String::trim).map(Integer::valueOf).toList();
+    }
+}
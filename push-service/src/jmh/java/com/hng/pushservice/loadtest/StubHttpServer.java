@@ -0,0 +1,110 @@
+package com.hng.pushservice.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Stand-in for one downstream HTTP service. Every request waits for the configured latency
+ * and then either fails with a 503 (with probability errorRate) or gets the body the
+ * responder builds from the request path.
+ */
+final class StubHttpServer implements AutoCloseable {
+
+    private static final byte[] ERROR_BODY = "{\"success\":false,\"message\":\"Injected failure\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final String name;
+    private final Duration latency;
+    private final double errorRate;
+    private final Function<String, String> responder;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    static {
+        // Otherwise Nagle's algorithm and delayed ACKs add about 40ms to every response
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    StubHttpServer(String name, Duration latency, double errorRate, Function<String, String> responder) throws IOException {
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.responder = responder;
+        // Handlers sleep for the latency, so the pool has to cover every connection the service may open
+        this.executor = Executors.newFixedThreadPool(256, task -> {
+            Thread thread = new Thread(task, "stub-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    long getRequests() {
+        return requests.get();
+    }
+
+    long getFailures() {
+        return failures.get();
+    }
+
+    String describe() {
+        return name + " latency=" + latency.toMillis() + "ms errors=" + errorRate;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange; InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.readAllBytes();
+            requests.incrementAndGet();
+            sleep(latency);
+
+            boolean fail = errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+            byte[] body = fail ? ERROR_BODY : responder.apply(exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+            if (fail) {
+                failures.incrementAndGet();
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(fail ? 503 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis(), duration.toNanosPart() % 1_000_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
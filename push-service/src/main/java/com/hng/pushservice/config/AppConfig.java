@@ -1,7 +1,21 @@
 package com.hng.pushservice.config;
 
+import com.hng.pushservice.http.CircuitBreaker;
+import com.hng.pushservice.http.DownstreamGuard;
+import com.hng.pushservice.services.ListenerPauseControl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 
@@ -9,12 +23,65 @@ import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 public class AppConfig {
 
     @Bean
-    public RestTemplate restTemplate(){
-        return new RestTemplate();
+    public RestTemplate userServiceRestTemplate(HttpClientProperties properties, MeterRegistry meterRegistry,
+                                                ListenerPauseControl pauseControl) {
+        return restTemplate("user-service", properties.getUser(), meterRegistry, pauseControl);
+    }
+
+    @Bean
+    public RestTemplate templateServiceRestTemplate(HttpClientProperties properties, MeterRegistry meterRegistry,
+                                                    ListenerPauseControl pauseControl) {
+        return restTemplate("template-service", properties.getTemplate(), meterRegistry, pauseControl);
+    }
+
+    @Bean
+    public RestTemplate gatewayRestTemplate(HttpClientProperties properties, MeterRegistry meterRegistry,
+                                            ListenerPauseControl pauseControl) {
+        return restTemplate("gateway", properties.getGateway(), meterRegistry, pauseControl);
     }
 
     @Bean
     public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
+
+    private RestTemplate restTemplate(String name, HttpClientProperties.Client client,
+                                      MeterRegistry meterRegistry, ListenerPauseControl pauseControl) {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(client.getMaxConnections())
+                .setMaxConnPerRoute(client.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(client.getConnectTimeout()))
+                        .setSocketTimeout(Timeout.of(client.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name).bindTo(meterRegistry);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(client.getBulkheadWait()))
+                        .setResponseTimeout(Timeout.of(client.getReadTimeout()))
+                        .build())
+                .evictIdleConnections(TimeValue.of(client.getIdleTimeout()))
+                .build();
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(name, client.getFailureThreshold(),
+                client.getOpenDuration().toMillis());
+        if (client.isPauseConsumption()) {
+            circuitBreaker.onStateChange(state -> {
+                if (state == CircuitBreaker.State.OPEN) {
+                    pauseControl.pauseFor(name + " circuit open", client.getOpenDuration());
+                } else if (state == CircuitBreaker.State.CLOSED) {
+                    pauseControl.resume(name + " circuit open");
+                }
+            });
+        }
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.getInterceptors().add(new DownstreamGuard(name, client.getMaxConcurrentCalls(),
+                client.getBulkheadWait(), circuitBreaker, meterRegistry));
+        return restTemplate;
+    }
 }
@@ -0,0 +1,51 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounds and triggers for scaling the normal lane's consumers. Prefetch is only scaled in
+ * single mode; in batch and pipeline mode it is the batch size and the in-flight limit.
+ * Off unless enabled, here and in application.properties (PUSH_AUTOSCALE).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.autoscale")
+public class AutoscaleProperties {
+
+    private boolean enabled = false;
+
+    private Duration interval = Duration.ofSeconds(5);
+
+    /** Minimum time between two scaling steps; backing off for downstream trouble uses downstream-cooldown. */
+    private Duration cooldown = Duration.ofSeconds(30);
+
+    /**
+     * Minimum time between a step and a back-off for downstream trouble, so one slow spell
+     * does not halve the lane on every tick before the last halving has had an effect.
+     */
+    private Duration downstreamCooldown = Duration.ofSeconds(10);
+
+    private int minConsumers = 1;
+    private int maxConsumers = 16;
+
+    /** Consumers added per scale-up step; scale-down removes one at a time when idle. */
+    private int step = 2;
+
+    private int minPrefetch = 10;
+
+    /** Also the prefetch the lane starts with; 250 is the listener container default. */
+    private int maxPrefetch = 250;
+
+    /** Scale up once more than this many messages wait per consumer. */
+    private int backlogPerConsumer = 100;
+
+    /** Halve consumers and prefetch when this share of user/template calls fails... */
+    private double maxErrorRate = 0.2;
+
+    /** ...or when their mean latency over the interval goes above this. */
+    private Duration maxLatency = Duration.ofSeconds(1);
+}
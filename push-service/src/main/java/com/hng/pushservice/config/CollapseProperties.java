@@ -0,0 +1,29 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Per-user collapsing of jobs that carry a collapse_key. The first job of a (user, key)
+ * group opens a window; when it closes, only the newest job of the group is sent.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.collapse")
+public class CollapseProperties {
+
+    /** When off, collapse_key is only passed on to FCM and every job is sent. */
+    private boolean enabled = false;
+
+    /** How long a group stays open after its first job; also the most a job is held back. */
+    private Duration window = Duration.ofSeconds(3);
+
+    private Duration pollInterval = Duration.ofMillis(200);
+    private int pollBatch = 500;
+
+    /** How long a closing group stays hidden from other instances while it is flushed. */
+    private Duration lease = Duration.ofSeconds(30);
+}
@@ -13,6 +13,8 @@ import java.io.FileInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 @Configuration
 public class FirebaseConfig {
@@ -22,9 +24,17 @@ public class FirebaseConfig {
     @Value("${firebase.service.account.path:/etc/secrets/firebase-service-account.json}")
     private String serviceAccountPath;
 
+    // Set on the CDS training run, which only refreshes the context and has no credentials to read
+    @Value("${spring.context.exit:}")
+    private String contextExit;
+
     @Bean
     public FirebaseApp initializeFirebaseApp() throws IOException {
         if (FirebaseApp.getApps().isEmpty()) {
+            if ("onRefresh".equals(contextExit) && !Files.exists(Path.of(serviceAccountPath))) {
+                logger.info("Training run without Firebase credentials; Firebase is not initialized");
+                return null;
+            }
             InputStream serviceAccount = new FileInputStream(serviceAccountPath);
 
             FirebaseOptions options = FirebaseOptions.builder()
@@ -0,0 +1,45 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * One HTTP client per downstream (app.http.user, app.http.template, app.http.gateway),
+ * so a slow dependency can only use up its own connections and call slots.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.http")
+public class HttpClientProperties {
+
+    private Client user = new Client();
+    private Client template = new Client();
+    private Client gateway = new Client();
+
+    @Data
+    public static class Client {
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        /** Pooled keep-alive connections to this downstream. */
+        private int maxConnections = 100;
+
+        /** Idle pooled connections are closed after this long. */
+        private Duration idleTimeout = Duration.ofSeconds(30);
+
+        /** Bulkhead: calls allowed at once, and how long a caller may wait for a slot. */
+        private int maxConcurrentCalls = 64;
+        private Duration bulkheadWait = Duration.ofMillis(200);
+
+        /** Circuit breaker: consecutive failures that open it, and how long it stays open. */
+        private int failureThreshold = 10;
+        private Duration openDuration = Duration.ofSeconds(30);
+
+        /** Stop consuming push jobs while this downstream's breaker is open. */
+        private boolean pauseConsumption = true;
+    }
+}
@@ -0,0 +1,38 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizing for app.push.consumer.mode=pipeline. max-in-flight becomes the consumer prefetch,
+ * so it caps how many unacked jobs one instance holds across all stages.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.pipeline")
+public class PipelineProperties {
+
+    private int maxInFlight = 256;
+
+    private Stage dedup = new Stage(16, 256);
+    private Stage user = new Stage(64, 256);
+    private Stage render = new Stage(64, 256);
+    private Stage send = new Stage(32, 256);
+    private Stage report = new Stage(16, 256);
+
+    @Data
+    public static class Stage {
+
+        private int concurrency;
+        private int queueCapacity;
+
+        public Stage() {
+        }
+
+        public Stage(int concurrency, int queueCapacity) {
+            this.concurrency = concurrency;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.hng.pushservice.config;
+
+/**
+ * The queues push jobs arrive on. Publishers pick the lane through the routing key on
+ * notifications.direct; each lane has its own consumers, so a backlog in one never delays
+ * the other.
+ */
+public enum PushLane {
+
+    NORMAL(RabbitMQConfig.PUSH_QUEUE, RabbitMQConfig.PUSH_ROUTING_KEY),
+    HIGH(RabbitMQConfig.PUSH_HIGH_QUEUE, RabbitMQConfig.PUSH_HIGH_ROUTING_KEY);
+
+    private final String queue;
+    private final String routingKey;
+
+    PushLane(String queue, String routingKey) {
+        this.queue = queue;
+        this.routingKey = routingKey;
+    }
+
+    public String getQueue() {
+        return queue;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+
+    /** Metric tag value, e.g. "high". */
+    public String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -5,9 +5,13 @@ import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFacto
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -18,6 +22,13 @@ public class RabbitMQConfig {
     public static final String PUSH_QUEUE = "push.queue";
     public static final String FAILED_PUSH_QUEUE = "push.queue.dlq";
     public static final String PUSH_ROUTING_KEY = "push";
+    public static final String PUSH_HIGH_QUEUE = "push.queue.high";
+    public static final String PUSH_HIGH_ROUTING_KEY = "push.high";
+    /** Listener id of the normal lane's container, whichever consumer mode is active. */
+    public static final String PUSH_LISTENER_ID = "push.normal";
+    public static final String PUSH_FANOUT_QUEUE = "push.fanout.queue";
+    public static final String PUSH_FANOUT_ROUTING_KEY = "push.fanout";
+    public static final String PUSH_FANOUT_WAIT_QUEUE = "push.fanout.queue.wait";
 
     @Bean
     public DirectExchange notificationsExchange() {
@@ -37,6 +48,18 @@ public class RabbitMQConfig {
         return new Queue(PUSH_QUEUE, true, false, false, args);
     }
 
+    /**
+     * Lane for pushes that cannot wait behind bulk traffic (OTPs, security alerts). Failed
+     * jobs end up in the same push.queue.dlq as the normal lane.
+     */
+    @Bean
+    public Queue pushHighQueue() {
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-dead-letter-exchange", NOTIFICATIONS_DLX);
+        args.put("x-dead-letter-routing-key", PUSH_ROUTING_KEY);
+        return new Queue(PUSH_HIGH_QUEUE, true, false, false, args);
+    }
+
     @Bean
     public Queue failedPushQueue() {
         return new Queue(FAILED_PUSH_QUEUE, true);
@@ -49,6 +72,13 @@ public class RabbitMQConfig {
                 .with(PUSH_ROUTING_KEY);
     }
 
+    @Bean
+    public Binding pushHighBinding(Queue pushHighQueue, DirectExchange notificationsExchange) {
+        return BindingBuilder.bind(pushHighQueue)
+                .to(notificationsExchange)
+                .with(PUSH_HIGH_ROUTING_KEY);
+    }
+
     @Bean
     public Binding failedPushBinding(Queue failedPushQueue, DirectExchange deadLetterExchange) {
         return BindingBuilder.bind(failedPushQueue)
@@ -56,6 +86,61 @@ public class RabbitMQConfig {
                 .with(PUSH_ROUTING_KEY);
     }
 
+    /**
+     * Campaign jobs (FanOutJobDto). A campaign is worked off in slices; each slice ends by
+     * publishing the next one here, so a crash only repeats the slice in progress.
+     */
+    @Bean
+    public Queue pushFanOutQueue() {
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-dead-letter-exchange", NOTIFICATIONS_DLX);
+        args.put("x-dead-letter-routing-key", PUSH_ROUTING_KEY);
+        return new Queue(PUSH_FANOUT_QUEUE, true, false, false, args);
+    }
+
+    /** Unconsumed like the retry queues: a campaign slice waits out the TTL, then goes back to push.fanout.queue. */
+    @Bean
+    public Queue pushFanOutWaitQueue(@Value("${app.push.fanout.retry-delay:10s}") Duration retryDelay) {
+        Map<String, Object> args = new HashMap<>();
+        args.put("x-message-ttl", retryDelay.toMillis());
+        args.put("x-dead-letter-exchange", NOTIFICATIONS_DIRECT_EXCHANGE);
+        args.put("x-dead-letter-routing-key", PUSH_FANOUT_ROUTING_KEY);
+        return new Queue(PUSH_FANOUT_WAIT_QUEUE, true, false, false, args);
+    }
+
+    @Bean
+    public Binding pushFanOutBinding(Queue pushFanOutQueue, DirectExchange notificationsExchange) {
+        return BindingBuilder.bind(pushFanOutQueue)
+                .to(notificationsExchange)
+                .with(PUSH_FANOUT_ROUTING_KEY);
+    }
+
+    /**
+     * One delay queue per lane and app.push.retry.delays entry. Nothing consumes them: a
+     * failed job sits out the queue's TTL and is dead-lettered straight back onto its lane. Every
+     * message in a queue has the same TTL, so expiry at the head never blocks on a longer
+     * one behind it.
+     */
+    @Bean
+    public Declarables pushRetryQueues(RetryProperties retryProperties) {
+        List<Declarable> queues = new ArrayList<>();
+        for (PushLane lane : PushLane.values()) {
+            for (Duration delay : retryProperties.getDelays()) {
+                Map<String, Object> args = new HashMap<>();
+                args.put("x-message-ttl", delay.toMillis());
+                args.put("x-dead-letter-exchange", NOTIFICATIONS_DIRECT_EXCHANGE);
+                args.put("x-dead-letter-routing-key", lane.getRoutingKey());
+                queues.add(new Queue(pushRetryQueue(lane, delay), true, false, false, args));
+            }
+        }
+        return new Declarables(queues);
+    }
+
+    /** e.g. push.queue.high.retry.10s; the TTL is part of the name since it can't change on a live queue. */
+    public static String pushRetryQueue(PushLane lane, Duration delay) {
+        return lane.getQueue() + ".retry." + delay.toString().substring(2).toLowerCase();
+    }
+
     // ADD THIS METHOD
     @Bean
     public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, 
@@ -72,6 +157,47 @@ public class RabbitMQConfig {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(converter);
+        // Retries go through the delay queues; anything thrown past them is dead-lettered
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    /**
+     * Used when app.push.consumer.mode=batch: the consumer collects up to batch-size
+     * messages (or fewer, once the queue has been quiet for receive-timeout) and hands them
+     * over as one list. Acks are manual so every message in the batch is settled on its own.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${app.push.batch.size:500}") int batchSize,
+            @Value("${app.push.batch.receive-timeout:200ms}") Duration receiveTimeout) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout.toMillis());
+        factory.setPrefetchCount(batchSize);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Used when app.push.consumer.mode=pipeline. The listener only hands jobs to the
+     * pipeline, so acks are manual and sent when a job leaves the last stage; prefetch is
+     * the in-flight limit and stops the broker from pushing more while stages are full.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory pipelineRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            Jackson2JsonMessageConverter converter,
+            PipelineProperties pipelineProperties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(converter);
+        factory.setPrefetchCount(pipelineProperties.getMaxInFlight());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
         return factory;
     }
-}
\ No newline at end of file
+}
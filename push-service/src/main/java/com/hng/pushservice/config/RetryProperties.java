@@ -0,0 +1,32 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Redelivery of failed push jobs. Each delay gets its own TTL queue; attempt n waits in
+ * the n-th tier (the last tier is reused once they run out) and max-attempts counts the
+ * first delivery too.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.retry")
+public class RetryProperties {
+
+    private int maxAttempts = 4;
+
+    private List<Duration> delays = List.of(Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(60));
+
+    /**
+     * Transient refusals (lease held elsewhere, breaker open, FCM throttling) in a row that
+     * are parked without using up an attempt; the next one counts as a failed attempt.
+     */
+    private int maxRefusals = 300;
+
+    /** How long to wait for the broker to confirm a retry before the original is settled. */
+    private Duration confirmTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,43 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Scheduled delivery (send_at / spread_over). Jobs due further out than min-delay are kept
+ * in Redis; every poll-interval, those due within horizon move into the in-memory timing
+ * wheel, and are published back to their lane at no more than release-rate per second.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.schedule")
+public class ScheduleProperties {
+
+    /** When off, send_at and spread_over are ignored and every job is delivered right away. */
+    private boolean enabled = false;
+
+    /** Jobs due sooner than this are not worth parking and are processed straight away. */
+    private Duration minDelay = Duration.ofSeconds(1);
+
+    private Duration tick = Duration.ofMillis(100);
+    private int wheelSize = 1024;
+
+    private Duration pollInterval = Duration.ofSeconds(1);
+    private Duration horizon = Duration.ofSeconds(60);
+    private int pollBatch = 1000;
+
+    /**
+     * Stop taking jobs from Redis while this many are waiting in the wheel or to be published.
+     * Also capped at what release-rate can publish in lease minus horizon.
+     */
+    private int maxHeld = 100_000;
+
+    /** How long a taken job stays hidden from other instances; must be longer than horizon. */
+    private Duration lease = Duration.ofMinutes(5);
+
+    /** Upper bound on jobs published back to the lanes per second, per instance. */
+    private int releaseRate = 200;
+}
@@ -0,0 +1,55 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Startup: the warm-up that runs before the listeners start (app.push.startup.warm-up), and
+ * how steady state is detected for push.startup.steady-state (app.push.startup.steady-state).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.startup")
+public class StartupProperties {
+
+    private WarmUp warmUp = new WarmUp();
+    private SteadyState steadyState = new SteadyState();
+
+    @Data
+    public static class WarmUp {
+
+        private boolean enabled = true;
+
+        /** Upper bound on the whole warm-up; steps not reached by then are skipped. */
+        private Duration timeout = Duration.ofSeconds(30);
+
+        /** Health calls made at once to each downstream, which leaves that many pooled connections open. */
+        private int connections = 4;
+
+        /** Passes over the in-process path: message conversion, push request and FCM message building. */
+        private int iterations = 5000;
+
+        /** A template rendered through template-service a few times; skipped when empty. */
+        private String templateCode;
+        private int renders = 3;
+
+        /** Validate (not deliver) one message with FCM, which also fetches its access token. */
+        private boolean fcmDryRun = false;
+    }
+
+    @Data
+    public static class SteadyState {
+
+        private Duration interval = Duration.ofSeconds(5);
+
+        /** Intervals with fewer settled jobs than this say nothing and are skipped. */
+        private int minJobs = 20;
+
+        /** Steady once the mean time per job moves less than this fraction for intervals in a row. */
+        private double tolerance = 0.1;
+        private int intervals = 3;
+    }
+}
@@ -0,0 +1,31 @@
+package com.hng.pushservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Local copies of templates, kept in step with template-service by conditional GETs, so
+ * jobs are rendered in-process instead of with a call to /render.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.push.template-sync")
+public class TemplateSyncProperties {
+
+    /** When off, every job is rendered by template-service. */
+    private boolean enabled = true;
+
+    private int maxTemplates = 1000;
+
+    /**
+     * How old a local copy may get before it is checked again. The check runs in the
+     * background while the copy is still used, so a change shows up within about this long.
+     */
+    private Duration revalidateAfter = Duration.ofSeconds(30);
+
+    /** Threads fetching and checking templates; each template is fetched by one at a time. */
+    private int syncThreads = 2;
+}
@@ -0,0 +1,61 @@
+package com.hng.pushservice.controller;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hng.pushservice.services.UserCacheInvalidation;
+import com.hng.pushservice.services.UserProfileCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Invalidation hooks for the user-profile cache, so user-service (or an operator) can make
+ * preference and push-token changes visible before the TTL runs out. Evictions are broadcast
+ * to every replica over Redis; a 503 means the broadcast failed and only this replica evicted,
+ * so the caller should retry.
+ */
+@RestController
+@RequestMapping("/api/v1/cache/users")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final UserProfileCache userProfileCache;
+    private final UserCacheInvalidation userCacheInvalidation;
+
+    @DeleteMapping("/{userId}")
+    public ResponseEntity<Void> invalidateUser(@PathVariable String userId) {
+        try {
+            userCacheInvalidation.evict(userId);
+        } catch (DataAccessException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> invalidateAllUsers() {
+        try {
+            userCacheInvalidation.evictAll();
+        } catch (DataAccessException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        CacheStats stats = userProfileCache.stats();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("size", userProfileCache.size());
+        response.put("hits", stats.hitCount());
+        response.put("misses", stats.missCount());
+        response.put("hitRate", stats.hitRate());
+        response.put("evictions", stats.evictionCount());
+        response.put("loadFailures", stats.loadFailureCount());
+        return ResponseEntity.status(HttpStatus.OK).body(response);
+    }
+}
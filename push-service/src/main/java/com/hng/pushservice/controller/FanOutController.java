@@ -0,0 +1,26 @@
+package com.hng.pushservice.controller;
+
+import com.hng.pushservice.dto.FanOutProgressDto;
+import com.hng.pushservice.services.FanOutProgressStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/** Progress of fan-out campaigns, as checkpointed in Redis. */
+@RestController
+@RequestMapping("/api/v1/push/fanout")
+@RequiredArgsConstructor
+public class FanOutController {
+
+    private final FanOutProgressStore progressStore;
+
+    @GetMapping("/{notificationId}")
+    public ResponseEntity<FanOutProgressDto> getProgress(@PathVariable String notificationId) {
+        FanOutProgressDto progress = progressStore.get(notificationId);
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.status(HttpStatus.OK).body(progress);
+    }
+}
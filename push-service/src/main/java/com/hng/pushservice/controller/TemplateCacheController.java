@@ -0,0 +1,31 @@
+package com.hng.pushservice.controller;
+
+import com.hng.pushservice.services.TemplateStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Drops local template copies, so the next job for a template is rendered by
+ * template-service while the copy is fetched again.
+ */
+@RestController
+@RequestMapping("/api/v1/cache/templates")
+@RequiredArgsConstructor
+public class TemplateCacheController {
+
+    private final TemplateStore templateStore;
+
+    @DeleteMapping("/{templateCode}")
+    public ResponseEntity<Void> invalidateTemplate(@PathVariable String templateCode) {
+        templateStore.invalidate(templateCode);
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> invalidateAllTemplates() {
+        templateStore.invalidateAll();
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
+    }
+}
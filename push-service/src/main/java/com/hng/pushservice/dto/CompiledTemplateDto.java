@@ -0,0 +1,16 @@
+package com.hng.pushservice.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One template field as template-service compiles it: literals[i] comes before the value
+ * of names[i], and the last literal after the last value.
+ */
+@Data
+public class CompiledTemplateDto {
+
+    private List<String> literals;
+    private List<String> names;
+}
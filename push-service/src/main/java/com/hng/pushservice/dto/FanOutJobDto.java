@@ -0,0 +1,37 @@
+package com.hng.pushservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One campaign: a single template and set of variables for many users. The recipients are
+ * either the explicit user_ids or a segment; with a topic the message goes to that FCM
+ * topic instead and there is no per-recipient status.
+ */
+@Data
+public class FanOutJobDto {
+
+    /** Identifies the campaign; progress and recipient statuses are kept under it. */
+    @JsonProperty("notification_id")
+    private String notificationId;
+
+    @JsonProperty("template_code")
+    private String templateCode;
+
+    private Map<String, String> variables;
+
+    @JsonProperty("user_ids")
+    private List<String> userIds;
+
+    /** Only "all" for now; user-service has no segments yet. */
+    private String segment;
+
+    private String topic;
+
+    private Integer priority;
+
+    private String timestamp;
+}
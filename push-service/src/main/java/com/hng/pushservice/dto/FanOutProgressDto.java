@@ -0,0 +1,25 @@
+package com.hng.pushservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+@Data
+public class FanOutProgressDto {
+
+    private String notificationId;
+
+    /** RUNNING, COMPLETED or FAILED. */
+    private String state;
+
+    /** Where the next slice resumes: a user id for segments, an index into user_ids otherwise. */
+    private String cursor;
+
+    private long delivered;
+    private long failed;
+    private long skipped;
+
+    private String error;
+
+    @JsonProperty("updated_at")
+    private String updatedAt;
+}
@@ -18,4 +18,46 @@ public class JobRequestDto {
     private String templateCode;
 
     private Map<String, String> variables;
+
+    /** 1 (lowest) to 5 (highest), as set by the gateway. */
+    private Integer priority;
+
+    /** When the gateway accepted the notification, ISO-8601 in UTC. */
+    private String timestamp;
+
+    /**
+     * Deliver no earlier than this: ISO-8601 with an offset, or a local date-time that is
+     * read in time_zone (UTC if that is missing too).
+     */
+    @JsonProperty("send_at")
+    private String sendAt;
+
+    /** IANA zone for a send_at without offset, e.g. Africa/Lagos for 09:00 local time. */
+    @JsonProperty("time_zone")
+    private String timeZone;
+
+    /**
+     * Spreads jobs sharing a send_at over this window (ISO-8601 like PT30M, or 30m); each
+     * job gets a fixed offset derived from its notification_id.
+     */
+    @JsonProperty("spread_over")
+    private String spreadOver;
+
+    /**
+     * Jobs for the same user with the same collapse key that arrive within the collapse window
+     * are sent as one push, the newest; the others end up SUPERSEDED.
+     */
+    @JsonProperty("collapse_key")
+    private String collapseKey;
+
+    /** Set by push-service on the job that survived collapsing: how many jobs it stands for. */
+    @JsonProperty("collapsed_count")
+    private Integer collapsedCount;
+
+    /**
+     * Set by push-service while a job is parked for a transient refusal: how many times in a
+     * row it has been, without using up an attempt.
+     */
+    @JsonProperty("refused_count")
+    private Integer refusedCount;
 }
@@ -15,4 +15,11 @@ public class PushRequest {
     private String imageUrl;
     private String actionLink;
 
+    // Not sent to FCM; lets a dead token be traced back to its user
+    private String userId;
+
+    // Lets the device replace an earlier notification with the same key
+    private String collapseKey;
+    private Integer collapsedCount;
+
 }
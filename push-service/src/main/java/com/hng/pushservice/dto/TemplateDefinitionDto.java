@@ -0,0 +1,24 @@
+package com.hng.pushservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/** A template in compiled form, from template-service's /api/v1/templates/{key}/compiled. */
+@Data
+public class TemplateDefinitionDto {
+
+    @JsonProperty("template_code")
+    private String templateKey;
+
+    private Integer version;
+
+    private CompiledTemplateDto subject;
+
+    private CompiledTemplateDto body;
+
+    @JsonProperty("image_url")
+    private CompiledTemplateDto imageUrl;
+
+    @JsonProperty("action_link")
+    private CompiledTemplateDto actionLink;
+}
@@ -0,0 +1,16 @@
+package com.hng.pushservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UserPageDto {
+
+    private List<UserResponseDto> users;
+
+    /** Pass as after for the next page; null once the last page has been read. */
+    private String nextCursor;
+}
@@ -0,0 +1,119 @@
+package com.hng.pushservice.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Circuit breaker for one downstream service, same model as the gateway's breaker:
+ * CLOSED until failure-threshold consecutive failures, then OPEN (calls fail fast) for
+ * open-duration, then HALF_OPEN where a single trial call decides whether to close again.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final List<Consumer<State>> listeners = new CopyOnWriteArrayList<>();
+
+    private State state = State.CLOSED;
+    private int failureCount;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public void onStateChange(Consumer<State> listener) {
+        listeners.add(listener);
+    }
+
+    public boolean allowRequest() {
+        State changedTo = null;
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                logger.info("Circuit breaker {} entering HALF_OPEN state", name);
+                state = State.HALF_OPEN;
+                changedTo = state;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+        }
+        notifyListeners(changedTo);
+        return true;
+    }
+
+    public void recordSuccess() {
+        State changedTo = null;
+        synchronized (this) {
+            failureCount = 0;
+            trialInFlight = false;
+            if (state != State.CLOSED) {
+                logger.info("Circuit breaker {} closed after successful recovery", name);
+                state = State.CLOSED;
+                changedTo = state;
+            }
+        }
+        notifyListeners(changedTo);
+    }
+
+    public void recordFailure() {
+        State changedTo = null;
+        synchronized (this) {
+            failureCount++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && failureCount >= failureThreshold)) {
+                logger.error("Circuit breaker {} opened after {} failures. Will retry after {}ms",
+                        name, failureCount, openMillis);
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                changedTo = state;
+            }
+        }
+        notifyListeners(changedTo);
+    }
+
+    /** Hands back a half-open trial slot for a call that was never actually made. */
+    public synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getFailureCount() {
+        return failureCount;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private void notifyListeners(State changedTo) {
+        if (changedTo != null) {
+            listeners.forEach(listener -> listener.accept(changedTo));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.hng.pushservice.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RestTemplate interceptor that puts one downstream behind a bulkhead (a cap on concurrent
+ * calls) and a circuit breaker, and times every call. Connection errors, timeouts and 5xx
+ * responses count as breaker failures; 4xx responses do not.
+ */
+public class DownstreamGuard implements ClientHttpRequestInterceptor {
+
+    private final String name;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+
+    public DownstreamGuard(String name, int maxConcurrentCalls, Duration bulkheadWait,
+                           CircuitBreaker circuitBreaker, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.bulkheadWaitMillis = bulkheadWait.toMillis();
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("push.downstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("push.downstream.breaker.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half open")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!circuitBreaker.allowRequest()) {
+            record(0, "circuit_open");
+            throw new DownstreamUnavailableException("Circuit breaker for " + name + " is open");
+        }
+
+        try {
+            if (!bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS)) {
+                // Give a half-open trial slot back, nothing was tried
+                circuitBreaker.releaseTrial();
+                record(0, "bulkhead_full");
+                throw new DownstreamUnavailableException("Too many concurrent calls to " + name);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            circuitBreaker.releaseTrial();
+            throw new DownstreamUnavailableException("Interrupted waiting for a call slot to " + name);
+        }
+
+        long start = System.nanoTime();
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().is5xxServerError()) {
+                circuitBreaker.recordFailure();
+                record(System.nanoTime() - start, "server_error");
+            } else {
+                circuitBreaker.recordSuccess();
+                record(System.nanoTime() - start, response.getStatusCode().is2xxSuccessful() ? "success" : "client_error");
+            }
+            return response;
+        } catch (IOException | RuntimeException e) {
+            circuitBreaker.recordFailure();
+            record(System.nanoTime() - start, "io_error");
+            throw e;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private void record(long nanos, String outcome) {
+        Timer.builder("push.downstream.requests")
+                .tag("client", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
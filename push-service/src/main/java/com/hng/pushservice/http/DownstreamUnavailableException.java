@@ -0,0 +1,12 @@
+package com.hng.pushservice.http;
+
+/**
+ * A call to a downstream service was refused locally, either because its circuit breaker
+ * is open or because its bulkhead had no free slot in time. Nothing was sent.
+ */
+public class DownstreamUnavailableException extends RuntimeException {
+
+    public DownstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,279 @@
+package com.hng.pushservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hng.pushservice.config.CollapseProperties;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.JobRequestDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collapses bursts of jobs for the same user and collapse_key into one push.
+ *
+ * A held job is added to the Redis hash push:collapse:{userId}:{key}, which keeps the
+ * newest job by gateway timestamp (last writer wins) and the ids of every job in the
+ * group. The first job of a group also puts the group in push:collapse:due at now + window.
+ * Every poll-interval, due groups are leased, their newest job goes back to its lane with
+ * collapsed_count set (so it is not held again), and the others are finished as SUPERSEDED
+ * and reported as "superseded".
+ *
+ * A group that took new jobs while it was flushed keeps them and opens a new window. If the
+ * instance dies mid-flush, the lease runs out and another instance flushes the group again;
+ * the survivor is then a duplicate that the job status claim filters out.
+ */
+@Service
+public class CollapseBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CollapseBuffer.class);
+
+    static final String GROUP_PREFIX = "push:collapse:";
+    static final String DUE_KEY = "push:collapse:due";
+
+    private static final String MEMBER_PREFIX = "n:";
+
+    // KEYS[1] group, KEYS[2] due; ARGV: notification id, payload, timestamp, due score, ttl, group key
+    private static final String ADD_SCRIPT = """
+            local newest = tonumber(redis.call('HGET', KEYS[1], 'ts') or '-1')
+            if tonumber(ARGV[3]) >= newest then
+                redis.call('HSET', KEYS[1], 'job', ARGV[2], 'ts', ARGV[3])
+            end
+            redis.call('HSET', KEYS[1], 'n:' .. ARGV[1], '1')
+            redis.call('HINCRBY', KEYS[1], 'v', 1)
+            redis.call('PEXPIRE', KEYS[1], ARGV[5])
+            redis.call('ZADD', KEYS[2], 'NX', ARGV[4], ARGV[6])
+            return 1
+            """;
+
+    // KEYS[1] due; ARGV: up to (score), limit, leased score
+    private static final String TAKE_SCRIPT = """
+            local groups = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, group in ipairs(groups) do
+                redis.call('ZADD', KEYS[1], ARGV[3], group)
+            end
+            return groups
+            """;
+
+    // KEYS[1] group, KEYS[2] due; ARGV: version read, group key, next due score, flushed ids...
+    private static final String FINISH_SCRIPT = """
+            if redis.call('HGET', KEYS[1], 'v') == ARGV[1] then
+                redis.call('DEL', KEYS[1])
+                redis.call('ZREM', KEYS[2], ARGV[2])
+                return 1
+            end
+            for i = 4, #ARGV do
+                redis.call('HDEL', KEYS[1], 'n:' .. ARGV[i])
+            end
+            redis.call('ZADD', KEYS[2], ARGV[3], ARGV[2])
+            return 0
+            """;
+
+    private static final RedisScript<Long> ADD = new DefaultRedisScript<>(ADD_SCRIPT, Long.class);
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE = new DefaultRedisScript<>(TAKE_SCRIPT, List.class);
+    private static final RedisScript<Long> FINISH = new DefaultRedisScript<>(FINISH_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final JobStatusStore jobStatusStore;
+    private final StatusReporter statusReporter;
+    private final PushMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final CollapseProperties properties;
+    private final Counter heldCounter;
+    private final Counter flushedCounter;
+
+    private ScheduledExecutorService flusher;
+
+    /** What is kept in a group's job field. */
+    @Data
+    @NoArgsConstructor
+    static class HeldJob {
+
+        private JobRequestDto job;
+        private PushLane lane;
+        private int attempt;
+    }
+
+    public CollapseBuffer(StringRedisTemplate redisTemplate,
+                          RabbitTemplate rabbitTemplate,
+                          JobStatusStore jobStatusStore,
+                          StatusReporter statusReporter,
+                          PushMetrics metrics,
+                          ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          CollapseProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.rabbitTemplate = rabbitTemplate;
+        this.jobStatusStore = jobStatusStore;
+        this.statusReporter = statusReporter;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.heldCounter = Counter.builder("push.collapse.held")
+                .description("Jobs held back to be collapsed with others for the same user and key")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("push.collapse.flushed")
+                .description("Collapse groups whose newest job was sent on")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "push-collapse-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getPollInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds the job to its collapse group. Returns true when the caller should just ack the
+     * message; false when the job has nothing to collapse, or Redis could not take it, and
+     * should be processed now.
+     */
+    public boolean hold(JobRequestDto jobRequestDto, PushLane lane, int attempt) {
+        if (!properties.isEnabled() || isBlank(jobRequestDto.getCollapseKey()) || isBlank(jobRequestDto.getUserId())
+                || jobRequestDto.getCollapsedCount() != null) {
+            return false;
+        }
+        String group = GROUP_PREFIX + "{" + jobRequestDto.getUserId() + "}:" + jobRequestDto.getCollapseKey();
+        long now = System.currentTimeMillis();
+        long window = properties.getWindow().toMillis();
+        try {
+            HeldJob held = new HeldJob();
+            held.setJob(jobRequestDto);
+            held.setLane(lane);
+            held.setAttempt(attempt);
+            redisTemplate.execute(ADD, List.of(group, DUE_KEY),
+                    jobRequestDto.getNotificationId(), objectMapper.writeValueAsString(held),
+                    String.valueOf(sentAt(jobRequestDto, now)), String.valueOf(now + window),
+                    // Outlives a few missed flushes, but never leaves a group behind for good
+                    String.valueOf(window + 2 * properties.getLease().toMillis()), group);
+        } catch (Exception e) {
+            logger.warn("Could not hold notificationId {} for collapsing, sending it now: {}",
+                    jobRequestDto.getNotificationId(), e.getMessage());
+            return false;
+        }
+        heldCounter.increment();
+        logger.debug("Holding notificationId {} in collapse group {}", jobRequestDto.getNotificationId(), group);
+        return true;
+    }
+
+    private static long sentAt(JobRequestDto jobRequestDto, long fallback) {
+        Instant timestamp = jobRequestDto.getTimestamp() != null ? PushLaneMetrics.parseTimestamp(jobRequestDto.getTimestamp()) : null;
+        return timestamp != null ? timestamp.toEpochMilli() : fallback;
+    }
+
+    private void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            List<?> groups = redisTemplate.execute(TAKE, List.of(DUE_KEY), String.valueOf(now),
+                    String.valueOf(properties.getPollBatch()), String.valueOf(now + properties.getLease().toMillis()));
+            if (groups == null) {
+                return;
+            }
+            for (Object group : groups) {
+                try {
+                    flushGroup((String) group);
+                } catch (Exception e) {
+                    // Still leased, so the group is flushed again when the lease runs out
+                    logger.error("Failed to flush collapse group {}: {}", group, e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Could not take due collapse groups: {}", e.getMessage());
+        }
+    }
+
+    private void flushGroup(String group) throws Exception {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(group);
+        Object payload = fields.get("job");
+        if (payload == null) {
+            // Expired, or emptied by an earlier flush
+            redisTemplate.opsForZSet().remove(DUE_KEY, group);
+            return;
+        }
+        HeldJob survivor = objectMapper.readValue((String) payload, HeldJob.class);
+        String survivorId = survivor.getJob().getNotificationId();
+        List<String> notificationIds = new ArrayList<>();
+        fields.keySet().forEach(field -> {
+            String name = (String) field;
+            if (name.startsWith(MEMBER_PREFIX)) {
+                notificationIds.add(name.substring(MEMBER_PREFIX.length()));
+            }
+        });
+
+        // Send the survivor before superseding anything, so a failed publish loses nothing
+        survivor.getJob().setCollapsedCount(Math.max(1, notificationIds.size()));
+        rabbitTemplate.convertAndSend(RabbitMQConfig.NOTIFICATIONS_DIRECT_EXCHANGE, survivor.getLane().getRoutingKey(),
+                survivor.getJob(), message -> {
+                    message.getMessageProperties().setHeader(PushRetryPublisher.ATTEMPT_HEADER, survivor.getAttempt());
+                    return message;
+                });
+        supersede(notificationIds.stream().filter(id -> !id.equals(survivorId)).toList());
+
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(fields.get("v")));
+        args.add(group);
+        args.add(String.valueOf(System.currentTimeMillis() + properties.getWindow().toMillis()));
+        args.addAll(notificationIds);
+        redisTemplate.execute(FINISH, List.of(group, DUE_KEY), args.toArray());
+        flushedCounter.increment();
+        logger.info("Collapsed {} jobs into notificationId {}", notificationIds.size(), survivorId);
+    }
+
+    /** Only ids claimed here are superseded; anything already finished keeps its status. */
+    private void supersede(List<String> notificationIds) {
+        if (notificationIds.isEmpty()) {
+            return;
+        }
+        List<JobStatusStore.ClaimResult> claims = jobStatusStore.claimAll(notificationIds);
+        Map<String, String> statuses = new LinkedHashMap<>();
+        for (int i = 0; i < notificationIds.size(); i++) {
+            if (claims.get(i) == JobStatusStore.ClaimResult.CLAIMED) {
+                statuses.put(notificationIds.get(i), JobStatusStore.SUPERSEDED);
+            }
+        }
+        jobStatusStore.finishAll(statuses);
+        statuses.keySet().forEach(notificationId -> metrics.time(PushMetrics.Stage.REPORT,
+                () -> statusReporter.report(notificationId, "superseded", null)));
+        metrics.outcome(PushMetrics.Outcome.SUPERSEDED, statuses.size());
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,102 @@
+package com.hng.pushservice.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Device tokens FCM has reported as permanently dead, shared by all instances through Redis
+ * keys push:dead-token:&lt;fingerprint&gt;, each expiring after retention. The fingerprint is
+ * the first 96 bits of the token's SHA-256 in base64 (16 bytes instead of ~160 for the token
+ * itself). A token is only ever retired for good by FCM, so the expiry just bounds memory:
+ * a token still in use after retention is rejected by FCM once more and recorded again.
+ *
+ * Lookups go through a local near-cache that remembers both answers for near-cache-ttl, so
+ * a token another instance has just retired may still be sent to once from here.
+ */
+@Service
+public class DeadTokenRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeadTokenRegistry.class);
+
+    static final String DEAD_TOKEN_KEY_PREFIX = "push:dead-token:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean enabled;
+    private final Duration retention;
+    private final LoadingCache<String, Boolean> nearCache;
+    private final Counter retiredCounter;
+
+    public DeadTokenRegistry(StringRedisTemplate redisTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.push.dead-tokens.enabled:true}") boolean enabled,
+                             @Value("${app.push.dead-tokens.retention:30d}") Duration retention,
+                             @Value("${app.push.dead-tokens.near-cache-size:100000}") long nearCacheSize,
+                             @Value("${app.push.dead-tokens.near-cache-ttl:10m}") Duration nearCacheTtl) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.retention = retention;
+        this.nearCache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(nearCacheTtl)
+                .recordStats()
+                .build(this::isMember), "push.dead-tokens.near-cache");
+        this.retiredCounter = Counter.builder("push.dead-tokens.retired")
+                .description("Device tokens recorded as permanently dead")
+                .register(meterRegistry);
+    }
+
+    public boolean isDead(String token) {
+        if (!enabled || token == null || token.isEmpty()) {
+            return false;
+        }
+        try {
+            return nearCache.get(fingerprint(token));
+        } catch (Exception e) {
+            // Not knowing must never block a delivery; at worst FCM rejects the token again
+            logger.warn("Failed to look up dead token registry: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    public void markDead(String token) {
+        if (!enabled || token == null || token.isEmpty()) {
+            return;
+        }
+        String fingerprint = fingerprint(token);
+        nearCache.put(fingerprint, Boolean.TRUE);
+        retiredCounter.increment();
+        try {
+            redisTemplate.opsForValue().set(DEAD_TOKEN_KEY_PREFIX + fingerprint, "1", retention);
+        } catch (Exception e) {
+            logger.error("Failed to record dead token in Redis: {}", e.getMessage());
+        }
+    }
+
+    private Boolean isMember(String fingerprint) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(DEAD_TOKEN_KEY_PREFIX + fingerprint));
+    }
+
+    private static String fingerprint(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
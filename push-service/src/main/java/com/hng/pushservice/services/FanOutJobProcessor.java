@@ -0,0 +1,332 @@
+package com.hng.pushservice.services;
+
+import com.google.firebase.messaging.SendResponse;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.*;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs fan-out campaigns: one template rendered once and sent to many users.
+ *
+ * A delivery of a campaign message works off one slice of at most pages-per-delivery pages.
+ * For every page it reads the users (a user-service cursor page, or the next part of
+ * user_ids), drops those already settled, sends to the rest with FCM sendEach and records
+ * each user's status together with the new cursor (see {@link FanOutProgressStore}). If
+ * pages are left, the slice ends by publishing the campaign to push.fanout.queue again, so
+ * one campaign never holds a consumer for long and a crash only repeats the current page.
+ *
+ * The campaign id is claimed through {@link JobStatusStore} for the length of a slice, so
+ * at most one consumer works on it at a time; a second copy of the same campaign message
+ * just interleaves with the first and stops once the campaign is completed.
+ *
+ * With a topic the content is sent once to the FCM topic; FCM does not report per device,
+ * so there is no recipient status.
+ */
+@Service
+@RequiredArgsConstructor
+public class FanOutJobProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanOutJobProcessor.class);
+
+    public static final String SEGMENT_ALL = "all";
+
+    private final JobStatusStore jobStatusStore;
+    private final FanOutProgressStore progressStore;
+    private final PushJobProcessor jobProcessor;
+    private final UserServiceClient userServiceClient;
+    private final FcmService fcmService;
+    private final DeadTokenRegistry deadTokenRegistry;
+    private final StatusReporter statusReporter;
+    private final RabbitTemplate rabbitTemplate;
+    private final PushMetrics metrics;
+
+    @Value("${app.push.fanout.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.push.fanout.pages-per-delivery:20}")
+    private int pagesPerDelivery;
+
+    @Value("${app.push.fanout.max-attempts:5}")
+    private int maxAttempts;
+
+    public void process(FanOutJobDto job, int attempt) {
+        String campaignId = job.getNotificationId();
+        String invalid = validate(job);
+        if (invalid != null) {
+            logger.error("Rejecting fan-out job {}: {}", campaignId, invalid);
+            if (campaignId != null) {
+                fail(campaignId, invalid);
+            }
+            throw new AmqpRejectAndDontRequeueException("Invalid fan-out job " + campaignId + ": " + invalid);
+        }
+
+        metrics.received(1);
+        try {
+            if (!jobProcessor.claim(campaignId)) {
+                return;
+            }
+            boolean completed = runSlice(job, attempt);
+            jobStatusStore.release(campaignId);
+            if (!completed) {
+                // The slice made progress, so the next one starts with a fresh attempt count
+                publish(RabbitMQConfig.PUSH_FANOUT_QUEUE, job, 1);
+            }
+        } catch (Exception e) {
+            metrics.error(e);
+            if (PushRetryPublisher.isInProgress(e)) {
+                retryLater(job, attempt, e);
+                return;
+            }
+            logger.error("Fan-out slice of {} failed on attempt {}: {}", campaignId, attempt, e.getMessage(), e);
+            jobStatusStore.release(campaignId);
+            if (attempt < maxAttempts) {
+                retryLater(job, attempt + 1, e);
+                return;
+            }
+            fail(campaignId, e.getMessage());
+            throw new AmqpRejectAndDontRequeueException("Out of retries for fan-out job " + campaignId, e);
+        } finally {
+            metrics.settled(1);
+        }
+    }
+
+    /** Returns true once the campaign is completed, false when pages are left for the next slice. */
+    private boolean runSlice(FanOutJobDto job, int attempt) {
+        String campaignId = job.getNotificationId();
+        PushRequest content = renderOnce(job);
+
+        if (job.getTopic() != null && !job.getTopic().isBlank()) {
+            fcmService.sendToTopic(content, job.getTopic());
+            complete(campaignId);
+            return true;
+        }
+
+        FanOutProgressDto progress = progressStore.get(campaignId);
+        String cursor = progress != null ? progress.getCursor() : null;
+        boolean lastAttempt = attempt >= maxAttempts;
+
+        for (int page = 0; page < pagesPerDelivery; page++) {
+            Page next = fetchPage(job, cursor, lastAttempt);
+            sendPage(campaignId, content, next, lastAttempt);
+            jobStatusStore.extend(campaignId);
+            if (next.cursor == null) {
+                complete(campaignId);
+                return true;
+            }
+            cursor = next.cursor;
+        }
+        logger.info("Fan-out job {} paused at cursor {}, continuing in the next slice", campaignId, cursor);
+        return false;
+    }
+
+    /** The content is rendered on the first slice only; later slices and restarts reuse it. */
+    private PushRequest renderOnce(FanOutJobDto job) {
+        String campaignId = job.getNotificationId();
+        RenderResponseDto rendered = progressStore.getRendered(campaignId);
+        if (rendered == null) {
+            JobRequestDto renderRequest = new JobRequestDto();
+            renderRequest.setNotificationId(campaignId);
+            renderRequest.setTemplateCode(job.getTemplateCode());
+            renderRequest.setVariables(job.getVariables());
+            rendered = jobProcessor.renderTemplate(renderRequest);
+            progressStore.start(campaignId, rendered);
+            logger.info("Rendered template {} for fan-out job {}", job.getTemplateCode(), campaignId);
+        }
+        PushRequest content = new PushRequest();
+        content.setNotificationId(campaignId);
+        content.setTitle(rendered.getRenderedSubject());
+        content.setBody(rendered.getRenderedBody());
+        content.setImageUrl(rendered.getRenderedImageUrl());
+        content.setActionLink(rendered.getRenderedActionLink());
+        return content;
+    }
+
+    /**
+     * Reads the next page of users. A listed user that user-service does not know (any 4xx,
+     * a deleted user say) is settled as skipped; one whose lookup failed otherwise fails the
+     * slice, so it is retried, and is settled as failed on the last attempt.
+     */
+    private Page fetchPage(FanOutJobDto job, String cursor, boolean lastAttempt) {
+        if (job.getUserIds() != null && !job.getUserIds().isEmpty()) {
+            List<String> userIds = job.getUserIds();
+            int from = cursor != null ? Integer.parseInt(cursor) : 0;
+            int to = Math.min(from + pageSize, userIds.size());
+            List<UserResponseDto> users = new ArrayList<>(to - from);
+            Map<String, String> settled = new LinkedHashMap<>();
+            for (String userId : progressStore.pending(job.getNotificationId(), userIds.subList(from, to))) {
+                try {
+                    users.add(jobProcessor.fetchUser(userId));
+                } catch (HttpClientErrorException e) {
+                    logger.warn("Skipping user {} of fan-out job {}: {}", userId, job.getNotificationId(), e.getStatusCode());
+                    settled.put(userId, JobStatusStore.SKIPPED);
+                } catch (RuntimeException e) {
+                    if (!lastAttempt) {
+                        throw e;
+                    }
+                    logger.warn("Giving up on user {} of fan-out job {}: {}", userId, job.getNotificationId(), e.getMessage());
+                    settled.put(userId, JobStatusStore.FAILED);
+                }
+            }
+            return new Page(users, settled, to < userIds.size() ? String.valueOf(to) : null);
+        }
+        UserPageDto page = metrics.timeBatch(PushMetrics.Stage.USER, () -> userServiceClient.fetchUserPage(cursor, pageSize));
+        Set<String> pending = new HashSet<>(progressStore.pending(job.getNotificationId(),
+                page.getUsers().stream().map(UserResponseDto::getId).toList()));
+        List<UserResponseDto> users = page.getUsers().stream().filter(user -> pending.contains(user.getId())).toList();
+        return new Page(users, Map.of(), page.getNextCursor());
+    }
+
+    /**
+     * Sends one page and records it. Recipients FCM turned away for a reason that may pass
+     * (throttling, an FCM hiccup) are left unrecorded and the cursor stays put, so the retried
+     * slice sends to exactly those again; on the last attempt they are recorded as failed.
+     * The cursor also stays on the last page, so a crash before completion replays only that page.
+     * Statuses are recorded after the send, so a crash in between sends that page again.
+     */
+    private void sendPage(String campaignId, PushRequest content, Page page, boolean lastAttempt) {
+        Map<String, String> statuses = new LinkedHashMap<>(page.settled);
+        List<PushRequest> requests = new ArrayList<>(page.users.size());
+        for (UserResponseDto user : page.users) {
+            if (!isReachable(user)) {
+                statuses.put(user.getId(), JobStatusStore.SKIPPED);
+                continue;
+            }
+            PushRequest request = new PushRequest();
+            request.setDeviceToken(user.getPushToken());
+            request.setUserId(user.getId());
+            request.setNotificationId(campaignId);
+            request.setTitle(content.getTitle());
+            request.setBody(content.getBody());
+            request.setImageUrl(content.getImageUrl());
+            request.setActionLink(content.getActionLink());
+            requests.add(request);
+        }
+
+        List<SendResponse> responses = requests.isEmpty() ? List.of() : fcmService.sendEach(requests);
+        int retryable = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            PushRequest request = requests.get(i);
+            SendResponse response = responses.get(i);
+            if (response.isSuccessful()) {
+                statuses.put(request.getUserId(), JobStatusStore.DELIVERED);
+                continue;
+            }
+            FcmSendException.Kind kind = FcmSendException.classify(response.getException());
+            if (kind == FcmSendException.Kind.DEAD_TOKEN) {
+                deadTokenRegistry.markDead(request.getDeviceToken());
+                statuses.put(request.getUserId(), JobStatusStore.FAILED);
+            } else if (kind == FcmSendException.Kind.REJECTED || lastAttempt) {
+                statuses.put(request.getUserId(), JobStatusStore.FAILED);
+            } else {
+                retryable++;
+            }
+        }
+
+        progressStore.recordPage(campaignId, statuses, retryable > 0 ? null : page.cursor);
+        countOutcomes(statuses);
+        if (retryable > 0) {
+            throw new RuntimeException(retryable + " recipients of fan-out job " + campaignId + " have to be retried");
+        }
+    }
+
+    private boolean isReachable(UserResponseDto user) {
+        String pushToken = user.getPushToken();
+        return user.getPreferences() != null && user.getPreferences().getPush()
+                && pushToken != null && !pushToken.isEmpty()
+                && !deadTokenRegistry.isDead(pushToken);
+    }
+
+    private void countOutcomes(Map<String, String> statuses) {
+        int delivered = 0;
+        int failed = 0;
+        int skipped = 0;
+        for (String status : statuses.values()) {
+            switch (status) {
+                case JobStatusStore.DELIVERED -> delivered++;
+                case JobStatusStore.FAILED -> failed++;
+                default -> skipped++;
+            }
+        }
+        metrics.outcome(PushMetrics.Outcome.DELIVERED, delivered);
+        metrics.outcome(PushMetrics.Outcome.FAILED, failed);
+        metrics.outcome(PushMetrics.Outcome.SKIPPED, skipped);
+    }
+
+    private void complete(String campaignId) {
+        progressStore.finish(campaignId, FanOutProgressStore.COMPLETED, null);
+        FanOutProgressDto progress = progressStore.get(campaignId);
+        logger.info("Fan-out job {} completed: {} delivered, {} failed, {} skipped", campaignId,
+                progress.getDelivered(), progress.getFailed(), progress.getSkipped());
+        report(campaignId, "delivered", null);
+        jobStatusStore.finish(campaignId, JobStatusStore.DELIVERED);
+    }
+
+    private void fail(String campaignId, String error) {
+        progressStore.finish(campaignId, FanOutProgressStore.FAILED, error);
+        report(campaignId, "failed", error);
+        jobStatusStore.finish(campaignId, JobStatusStore.FAILED);
+    }
+
+    private void report(String campaignId, String status, String error) {
+        metrics.time(PushMetrics.Stage.REPORT, () -> statusReporter.report(campaignId, status, error));
+    }
+
+    private void retryLater(FanOutJobDto job, int attempt, Throwable error) {
+        try {
+            publish(RabbitMQConfig.PUSH_FANOUT_WAIT_QUEUE, job, attempt);
+            metrics.outcome(PushMetrics.Outcome.RETRIED);
+        } catch (Exception e) {
+            throw new AmqpRejectAndDontRequeueException("Failed to schedule retry of fan-out job " + job.getNotificationId(), error);
+        }
+    }
+
+    private void publish(String queue, FanOutJobDto job, int attempt) {
+        rabbitTemplate.convertAndSend("", queue, job, message -> {
+            message.getMessageProperties().setHeader(PushRetryPublisher.ATTEMPT_HEADER, attempt);
+            return message;
+        });
+    }
+
+    private static String validate(FanOutJobDto job) {
+        if (job.getNotificationId() == null || job.getNotificationId().isBlank()) {
+            return "notification_id is required";
+        }
+        if (job.getTemplateCode() == null || job.getTemplateCode().isBlank()) {
+            return "template_code is required";
+        }
+        boolean hasTopic = job.getTopic() != null && !job.getTopic().isBlank();
+        boolean hasUsers = job.getUserIds() != null && !job.getUserIds().isEmpty();
+        if (!hasTopic && !hasUsers && !SEGMENT_ALL.equals(job.getSegment())) {
+            return "one of topic, user_ids or segment \"" + SEGMENT_ALL + "\" is required";
+        }
+        return null;
+    }
+
+    private static class Page {
+
+        private final List<UserResponseDto> users;
+        // Users settled without a send, by status
+        private final Map<String, String> settled;
+        private final String cursor;
+
+        Page(List<UserResponseDto> users, Map<String, String> settled, String cursor) {
+            this.users = users;
+            this.settled = settled;
+            this.cursor = cursor;
+        }
+    }
+}
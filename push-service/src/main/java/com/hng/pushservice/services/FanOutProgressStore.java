@@ -0,0 +1,170 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.dto.FanOutProgressDto;
+import com.hng.pushservice.dto.RenderResponseDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checkpoints of fan-out campaigns, so a campaign picks up where it stopped instead of
+ * starting over.
+ *
+ * push:fanout:{&lt;id&gt;} is a hash with the state, the resume cursor, the rendered
+ * content and a counter per final status. push:fanout:{&lt;id&gt;}:recipients maps every
+ * user that has been settled to DELIVERED, FAILED or SKIPPED. A page is recorded with one
+ * script call that only counts recipients it sees for the first time, so replaying a page
+ * after a crash skips the users already recorded (see {@link #pending}) and counts nobody
+ * twice; users sent to but not yet recorded when it crashed are sent to again. Both keys
+ * expire after app.push.idempotency.window, like the job statuses.
+ */
+@Service
+public class FanOutProgressStore {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    // KEYS[1] progress hash, KEYS[2] recipients hash; ARGV: cursor, ttl ms, now, then user/status pairs
+    private static final String RECORD_PAGE_SCRIPT = """
+            for i = 4, #ARGV, 2 do
+                if redis.call('HSETNX', KEYS[2], ARGV[i], ARGV[i + 1]) == 1 then
+                    redis.call('HINCRBY', KEYS[1], ARGV[i + 1], 1)
+                end
+            end
+            if ARGV[1] ~= '' then
+                redis.call('HSET', KEYS[1], 'cursor', ARGV[1])
+            end
+            redis.call('HSET', KEYS[1], 'updated_at', ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            redis.call('PEXPIRE', KEYS[2], ARGV[2])
+            return 1
+            """;
+
+    private static final RedisScript<Long> RECORD_PAGE = new DefaultRedisScript<>(RECORD_PAGE_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration window;
+
+    public FanOutProgressStore(StringRedisTemplate redisTemplate,
+                               @Value("${app.push.idempotency.window:24h}") Duration window) {
+        this.redisTemplate = redisTemplate;
+        this.window = window;
+    }
+
+    public FanOutProgressDto get(String notificationId) {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(progressKey(notificationId));
+        if (fields.isEmpty()) {
+            return null;
+        }
+        FanOutProgressDto progress = new FanOutProgressDto();
+        progress.setNotificationId(notificationId);
+        progress.setState((String) fields.get("state"));
+        progress.setCursor(emptyToNull((String) fields.get("cursor")));
+        progress.setDelivered(count(fields.get(JobStatusStore.DELIVERED)));
+        progress.setFailed(count(fields.get(JobStatusStore.FAILED)));
+        progress.setSkipped(count(fields.get(JobStatusStore.SKIPPED)));
+        progress.setError((String) fields.get("error"));
+        progress.setUpdatedAt((String) fields.get("updated_at"));
+        return progress;
+    }
+
+    /** The content rendered when the campaign started, or null if it has not been rendered yet. */
+    public RenderResponseDto getRendered(String notificationId) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(progressKey(notificationId),
+                List.of("rendered_subject", "rendered_body", "rendered_image_url", "rendered_action_link"));
+        if (values.get(1) == null) {
+            return null;
+        }
+        return new RenderResponseDto(emptyToNull((String) values.get(0)), (String) values.get(1),
+                emptyToNull((String) values.get(2)), emptyToNull((String) values.get(3)));
+    }
+
+    /** Records the rendered content and marks the campaign as running. */
+    public void start(String notificationId, RenderResponseDto rendered) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("state", RUNNING);
+        fields.put("rendered_subject", nullToEmpty(rendered.getRenderedSubject()));
+        fields.put("rendered_body", nullToEmpty(rendered.getRenderedBody()));
+        fields.put("rendered_image_url", nullToEmpty(rendered.getRenderedImageUrl()));
+        fields.put("rendered_action_link", nullToEmpty(rendered.getRenderedActionLink()));
+        fields.put("updated_at", Instant.now().toString());
+        String key = progressKey(notificationId);
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, window);
+    }
+
+    /** The given users minus those already settled in an earlier run of the same page. */
+    public List<String> pending(String notificationId, List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return userIds;
+        }
+        List<Object> statuses = redisTemplate.opsForHash().multiGet(recipientsKey(notificationId), new ArrayList<>(userIds));
+        List<String> pending = new ArrayList<>(userIds.size());
+        for (int i = 0; i < userIds.size(); i++) {
+            if (statuses.get(i) == null) {
+                pending.add(userIds.get(i));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Stores the final status of each user on the page and moves the cursor, atomically.
+     * A null cursor leaves it where it is.
+     */
+    public void recordPage(String notificationId, Map<String, String> statusesByUser, String cursor) {
+        List<String> args = new ArrayList<>(3 + statusesByUser.size() * 2);
+        args.add(nullToEmpty(cursor));
+        args.add(String.valueOf(window.toMillis()));
+        args.add(Instant.now().toString());
+        statusesByUser.forEach((userId, status) -> {
+            args.add(userId);
+            args.add(status);
+        });
+        redisTemplate.execute(RECORD_PAGE,
+                List.of(progressKey(notificationId), recipientsKey(notificationId)), args.toArray());
+    }
+
+    public void finish(String notificationId, String state, String error) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("state", state);
+        fields.put("updated_at", Instant.now().toString());
+        if (error != null) {
+            fields.put("error", error);
+        }
+        String key = progressKey(notificationId);
+        redisTemplate.opsForHash().putAll(key, fields);
+        redisTemplate.expire(key, window);
+    }
+
+    // The hash tag keeps both keys of a campaign in one slot, so the script also runs on a cluster
+    private static String progressKey(String notificationId) {
+        return "push:fanout:{" + notificationId + "}";
+    }
+
+    private static String recipientsKey(String notificationId) {
+        return progressKey(notificationId) + ":recipients";
+    }
+
+    private static long count(Object value) {
+        return value == null ? 0 : Long.parseLong((String) value);
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,197 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.http.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AIMD limit on concurrent FCM sends, shared by every consumer in the instance.
+ *
+ * Each successful send raises the limit by 1/limit, so it grows by about one per round of
+ * sends. A quota or availability error cuts it by backoff-ratio, at most once per cooldown
+ * so one burst of failures counts as a single congestion event. A Retry-After (or
+ * default-retry-after when FCM gave none) also holds every send until it has passed, and
+ * when it is at least pause-threshold long the listener containers are paused as well, so
+ * jobs stay in RabbitMQ instead of piling up on blocked consumer threads.
+ *
+ * A caller that cannot get a permit within max-wait gets a DownstreamUnavailableException,
+ * which the retry queues treat as not costing the job an attempt.
+ */
+@Service
+public class FcmRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FcmRateLimiter.class);
+
+    private static final String PAUSE_REASON = "FCM throttling";
+
+    private final ListenerPauseControl pauseControl;
+    private final boolean enabled;
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoffRatio;
+    private final Duration cooldown;
+    private final Duration defaultRetryAfter;
+    private final Duration pauseThreshold;
+    private final Duration maxWait;
+    private final Counter throttleCounter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitsChanged = lock.newCondition();
+
+    private volatile double limit;
+    private volatile int inFlight;
+    private volatile long throttledUntil;
+    private long lastCutAt;
+
+    private long rateWindowStart = System.currentTimeMillis();
+    private long rateWindowSends;
+    private volatile double rate;
+
+    public FcmRateLimiter(ListenerPauseControl pauseControl,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.push.fcm.limiter.enabled:true}") boolean enabled,
+                          @Value("${app.push.fcm.limiter.initial-limit:32}") int initialLimit,
+                          @Value("${app.push.fcm.limiter.min-limit:1}") int minLimit,
+                          @Value("${app.push.fcm.limiter.max-limit:500}") int maxLimit,
+                          @Value("${app.push.fcm.limiter.backoff-ratio:0.5}") double backoffRatio,
+                          @Value("${app.push.fcm.limiter.cooldown:1s}") Duration cooldown,
+                          @Value("${app.push.fcm.limiter.default-retry-after:1s}") Duration defaultRetryAfter,
+                          @Value("${app.push.fcm.limiter.pause-threshold:5s}") Duration pauseThreshold,
+                          @Value("${app.push.fcm.limiter.max-wait:30s}") Duration maxWait) {
+        this.pauseControl = pauseControl;
+        this.enabled = enabled;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.cooldown = cooldown;
+        this.defaultRetryAfter = defaultRetryAfter;
+        this.pauseThreshold = pauseThreshold;
+        this.maxWait = maxWait;
+
+        Gauge.builder("push.fcm.limiter.limit", this, FcmRateLimiter::getLimit)
+                .description("Current AIMD limit on concurrent FCM sends")
+                .register(meterRegistry);
+        Gauge.builder("push.fcm.limiter.in-flight", this, FcmRateLimiter::getInFlight)
+                .description("FCM sends currently holding a permit")
+                .register(meterRegistry);
+        Gauge.builder("push.fcm.limiter.rate", this, FcmRateLimiter::getRate)
+                .description("FCM sends completed per second")
+                .register(meterRegistry);
+        Gauge.builder("push.fcm.limiter.throttled", this, limiter -> limiter.isThrottled() ? 1 : 0)
+                .description("1 while sends are held back by a Retry-After")
+                .register(meterRegistry);
+        this.throttleCounter = Counter.builder("push.fcm.limiter.throttle-events")
+                .description("Quota or availability errors returned by FCM")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Blocks until the given number of sends may start and returns how many permits were
+     * taken. A request larger than the current limit is let through alone once nothing else
+     * is in flight, so a batch can never wait forever.
+     */
+    public int acquire(int sends) {
+        if (!enabled) {
+            return sends;
+        }
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                boolean heldBack = now < throttledUntil;
+                boolean hasRoom = inFlight + sends <= (int) limit || inFlight == 0;
+                if (!heldBack && hasRoom) {
+                    inFlight += sends;
+                    return sends;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new DownstreamUnavailableException("No FCM send permit within " + maxWait);
+                }
+                long wait = heldBack ? Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(throttledUntil - now)) : remaining;
+                permitsChanged.awaitNanos(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DownstreamUnavailableException("Interrupted while waiting for an FCM send permit");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the permits and feeds the outcome back: successful sends grow the limit,
+     * a throttled one shrinks it and holds further sends for retryAfter.
+     */
+    public void release(int permits, int succeeded, boolean throttled, Duration retryAfter) {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            inFlight = Math.max(0, inFlight - permits);
+            long now = System.currentTimeMillis();
+
+            for (int i = 0; i < succeeded; i++) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            recordSends(now, succeeded);
+
+            if (throttled) {
+                throttleCounter.increment();
+                Duration backoff = retryAfter != null ? retryAfter : defaultRetryAfter;
+                throttledUntil = Math.max(throttledUntil, now + backoff.toMillis());
+                if (now - lastCutAt >= cooldown.toMillis()) {
+                    lastCutAt = now;
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    logger.warn("FCM is throttling; send limit cut to {}, holding sends for {}", (int) limit, backoff);
+                }
+                if (backoff.compareTo(pauseThreshold) >= 0) {
+                    pauseControl.pauseFor(PAUSE_REASON, backoff);
+                }
+            }
+            permitsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public double getRate() {
+        return System.currentTimeMillis() - rateWindowStart > 2000 ? 0 : rate;
+    }
+
+    public boolean isThrottled() {
+        return System.currentTimeMillis() < throttledUntil;
+    }
+
+    private void recordSends(long now, int sends) {
+        rateWindowSends += sends;
+        long elapsed = now - rateWindowStart;
+        if (elapsed >= 1000) {
+            rate = rateWindowSends * 1000.0 / elapsed;
+            rateWindowStart = now;
+            rateWindowSends = 0;
+        }
+    }
+}
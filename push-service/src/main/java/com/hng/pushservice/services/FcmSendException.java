@@ -0,0 +1,127 @@
+package com.hng.pushservice.services;
+
+import com.google.firebase.ErrorCode;
+import com.google.firebase.IncomingHttpResponse;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An FCM send failed, classified by what it means for the job:
+ * <ul>
+ *   <li>DEAD_TOKEN: the device token will never work again (uninstalled app, expired
+ *       token, token from another Firebase project).</li>
+ *   <li>REJECTED: FCM refused this message and will refuse it again (bad payload, or a
+ *       malformed token: FCM reports both as INVALID_ARGUMENT).</li>
+ *   <li>THROTTLED: FCM is over quota or unavailable; the send should be repeated once it
+ *       recovers, after Retry-After when FCM sent one.</li>
+ *   <li>TRANSIENT: anything else; worth retrying.</li>
+ * </ul>
+ */
+public class FcmSendException extends RuntimeException {
+
+    public enum Kind {
+        DEAD_TOKEN,
+        REJECTED,
+        THROTTLED,
+        TRANSIENT
+    }
+
+    private final Kind kind;
+    private final Duration retryAfter;
+
+    public FcmSendException(Kind kind, String message, Throwable cause) {
+        this(kind, message, cause, null);
+    }
+
+    public FcmSendException(Kind kind, String message, Throwable cause, Duration retryAfter) {
+        super(message, cause);
+        this.kind = kind;
+        this.retryAfter = retryAfter;
+    }
+
+    public static FcmSendException from(FirebaseMessagingException e) {
+        return new FcmSendException(classify(e), "FCM sending failed: " + e.getMessage(), e, retryAfterOf(e));
+    }
+
+    public static Kind classify(FirebaseMessagingException e) {
+        MessagingErrorCode code = e.getMessagingErrorCode();
+        if (code == null) {
+            ErrorCode errorCode = e.getErrorCode();
+            return errorCode == ErrorCode.RESOURCE_EXHAUSTED || errorCode == ErrorCode.UNAVAILABLE
+                    || errorCode == ErrorCode.INTERNAL ? Kind.THROTTLED : Kind.TRANSIENT;
+        }
+        switch (code) {
+            case QUOTA_EXCEEDED:
+            case UNAVAILABLE:
+            case INTERNAL:
+                return Kind.THROTTLED;
+            case UNREGISTERED:
+            case SENDER_ID_MISMATCH:
+                return Kind.DEAD_TOKEN;
+            case INVALID_ARGUMENT:
+                // Could be the token or the payload; the code does not say which, and FCM's
+                // wording is not a contract, so the token is not retired for it
+                return Kind.REJECTED;
+            default:
+                return Kind.TRANSIENT;
+        }
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /** How long FCM asked us to back off, or null when it did not say. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /** Reads Retry-After, which FCM sends either as seconds or as an HTTP date. */
+    static Duration retryAfterOf(FirebaseMessagingException e) {
+        IncomingHttpResponse response = e.getHttpResponse();
+        if (response == null || response.getHeaders() == null) {
+            return null;
+        }
+        Object header = null;
+        for (Map.Entry<String, Object> entry : response.getHeaders().entrySet()) {
+            if ("retry-after".equalsIgnoreCase(entry.getKey())) {
+                header = entry.getValue();
+            }
+        }
+        if (header instanceof List<?> values) {
+            header = values.isEmpty() ? null : values.get(0);
+        }
+        if (header == null) {
+            return null;
+        }
+
+        String value = header.toString().trim();
+        try {
+            return Duration.ofSeconds(Long.parseLong(value));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Instant until = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                Duration remaining = Duration.between(Instant.now(), until);
+                return remaining.isNegative() ? Duration.ZERO : remaining;
+            } catch (Exception notADate) {
+                return null;
+            }
+        }
+    }
+
+    public static Kind kindOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FcmSendException fcmSendException) {
+                return fcmSendException.getKind();
+            }
+        }
+        return null;
+    }
+}
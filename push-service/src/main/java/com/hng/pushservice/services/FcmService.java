@@ -5,15 +5,152 @@ package com.hng.pushservice.services;
 import com.google.firebase.messaging.*;
 import com.hng.pushservice.dto.PushRequest;
 import org.slf4j.Logger;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
 @Service
+@RequiredArgsConstructor
 public class FcmService {
 
     private static final Logger logger = LoggerFactory.getLogger(FcmService.class);
 
+    // FirebaseMessaging.sendEach accepts at most 500 messages per call
+    public static final int MAX_BATCH_SIZE = 500;
+
+    private static final Pattern WEBPUSH_TOPIC = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    private final FcmRateLimiter rateLimiter;
+    private final PushMetrics metrics;
+
     public String sendPushNotification(PushRequest request) {
+        return metrics.time(PushMetrics.Stage.SEND, () -> send(buildMessage(request), "token " + request.getDeviceToken()));
+    }
+
+    /**
+     * Sends the rendered content once to every device subscribed to the FCM topic. FCM
+     * does not say which devices got it, so there is nothing to settle per recipient.
+     */
+    public String sendToTopic(PushRequest content, String topic) {
+        Message message = messageBuilder(content).setTopic(topic).build();
+        return metrics.time(PushMetrics.Stage.SEND, () -> send(message, "topic " + topic));
+    }
+
+    /**
+     * Has FCM validate the message for the topic without delivering it. Used by the startup
+     * warm-up: it opens the connection to FCM and fetches the access token ahead of the first job.
+     */
+    public String validate(PushRequest content, String topic) throws FirebaseMessagingException {
+        return FirebaseMessaging.getInstance().send(messageBuilder(content).setTopic(topic).build(), true);
+    }
+
+    private String send(Message message, String target) {
+
+        rateLimiter.acquire(1);
+        boolean sent = false;
+        FcmSendException failure = null;
+        try {
+            String response = FirebaseMessaging.getInstance().send(message);
+            sent = true;
+            logger.info("Successfully sent message to {}: {}", target, response);
+            return response;
+        } catch (FirebaseMessagingException e) {
+            logger.error("Failed to send push notification to {}: {} ({})",
+                    target, e.getMessage(), e.getMessagingErrorCode());
+            failure = FcmSendException.from(e);
+            throw failure;
+        } finally {
+            boolean throttled = failure != null && failure.getKind() == FcmSendException.Kind.THROTTLED;
+            rateLimiter.release(1, sent ? 1 : 0, throttled, throttled ? failure.getRetryAfter() : null);
+        }
+    }
+
+    /**
+     * Sends the requests with FirebaseMessaging.sendEach in chunks of up to 500, or of the
+     * rate limiter's current limit when that is lower.
+     * The returned list lines up index-for-index with the requests, so every caller
+     * can settle each message on its own. Only a failure of a whole chunk throws.
+     */
+    public List<SendResponse> sendEach(List<PushRequest> requests) {
+        List<SendResponse> responses = new ArrayList<>(requests.size());
+
+        int from = 0;
+        while (from < requests.size()) {
+            int chunkSize = Math.max(1, Math.min(MAX_BATCH_SIZE, rateLimiter.getLimit()));
+            List<PushRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+            from += chunk.size();
+            List<Message> messages = new ArrayList<>(chunk.size());
+            for (PushRequest request : chunk) {
+                messages.add(buildMessage(request));
+            }
+
+            int permits = rateLimiter.acquire(messages.size());
+            int succeeded = 0;
+            FcmSendException throttle = null;
+            try {
+                BatchResponse batchResponse = metrics.timeBatch(PushMetrics.Stage.SEND, () -> sendChunk(messages));
+                logger.info("Sent FCM batch of {}: {} succeeded, {} failed",
+                        messages.size(), batchResponse.getSuccessCount(), batchResponse.getFailureCount());
+                succeeded = batchResponse.getSuccessCount();
+                for (SendResponse response : batchResponse.getResponses()) {
+                    if (!response.isSuccessful() && response.getException() != null) {
+                        FcmSendException failure = FcmSendException.from(response.getException());
+                        if (failure.getKind() == FcmSendException.Kind.THROTTLED
+                                && (throttle == null || throttle.getRetryAfter() == null)) {
+                            throttle = failure;
+                        }
+                    }
+                }
+                responses.addAll(batchResponse.getResponses());
+            } catch (FcmBatchFailure failure) {
+                FirebaseMessagingException e = failure.getCause();
+                logger.error("Failed to send FCM batch of {}: {}", messages.size(), e.getMessage());
+                throttle = FcmSendException.from(e);
+                if (throttle.getKind() != FcmSendException.Kind.THROTTLED) {
+                    throttle = null;
+                }
+                throw new RuntimeException("FCM batch sending failed", e);
+            } finally {
+                rateLimiter.release(permits, succeeded, throttle != null, throttle != null ? throttle.getRetryAfter() : null);
+            }
+        }
+
+        return responses;
+    }
+
+    private static BatchResponse sendChunk(List<Message> messages) {
+        try {
+            return FirebaseMessaging.getInstance().sendEach(messages);
+        } catch (FirebaseMessagingException e) {
+            throw new FcmBatchFailure(e);
+        }
+    }
+
+    /** Carries a checked FCM failure out of the timed lambda. */
+    private static class FcmBatchFailure extends RuntimeException {
+
+        FcmBatchFailure(FirebaseMessagingException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized FirebaseMessagingException getCause() {
+            return (FirebaseMessagingException) super.getCause();
+        }
+    }
+
+    public Message buildMessage(PushRequest request) {
+        return messageBuilder(request)
+                .setToken(request.getDeviceToken())
+                .build();
+    }
+
+    /** Notification, image and link of the request, without a target yet. */
+    private Message.Builder messageBuilder(PushRequest request) {
 
         Notification.Builder notificationBuilder = Notification.builder()
                 .setTitle(request.getTitle())
@@ -24,27 +161,42 @@ public class FcmService {
         }
 
         Message.Builder messageBuilder = Message.builder()
-                .setToken(request.getDeviceToken())
                 .setNotification(notificationBuilder.build());
 
+        WebpushConfig.Builder webpushBuilder = null;
         if (request.getActionLink() != null && !request.getActionLink().isEmpty()) {
-            WebpushConfig webpushConfig = WebpushConfig.builder()
+            webpushBuilder = WebpushConfig.builder()
                     .setFcmOptions(WebpushFcmOptions.builder()
                             .setLink(request.getActionLink())
-                            .build())
-                    .build();
-            messageBuilder.setWebpushConfig(webpushConfig);
+                            .build());
         }
 
-        Message message = messageBuilder.build();
+        // Lets the device replace what it still shows for the same key instead of stacking it
+        String collapseKey = request.getCollapseKey();
+        if (collapseKey != null && !collapseKey.isEmpty()) {
+            messageBuilder.setAndroidConfig(AndroidConfig.builder()
+                    .setCollapseKey(collapseKey)
+                    .build());
+            messageBuilder.setApnsConfig(ApnsConfig.builder()
+                    .putHeader("apns-collapse-id", collapseKey)
+                    .setAps(Aps.builder().build())
+                    .build());
+            // Web push topics are at most 32 URL-safe characters
+            if (WEBPUSH_TOPIC.matcher(collapseKey).matches()) {
+                if (webpushBuilder == null) {
+                    webpushBuilder = WebpushConfig.builder();
+                }
+                webpushBuilder.putHeader("Topic", collapseKey);
+            }
+        }
+        if (request.getCollapsedCount() != null && request.getCollapsedCount() > 1) {
+            messageBuilder.putData("collapsed_count", String.valueOf(request.getCollapsedCount()));
+        }
 
-        try {
-            String response = FirebaseMessaging.getInstance().send(message);
-            logger.info("Successfully sent message to token {}: {}", request.getDeviceToken(), response);
-            return response;
-        } catch (FirebaseMessagingException e) {
-            logger.error("Failed to send push notification to token {}: {}", request.getDeviceToken(), e.getMessage());
-            throw new RuntimeException("FCM sending failed", e);
+        if (webpushBuilder != null) {
+            messageBuilder.setWebpushConfig(webpushBuilder.build());
         }
+
+        return messageBuilder;
     }
 }
\ No newline at end of file
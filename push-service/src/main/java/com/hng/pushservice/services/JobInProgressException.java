@@ -0,0 +1,12 @@
+package com.hng.pushservice.services;
+
+/**
+ * Thrown when a job's lease is held by another consumer. The message has to come back
+ * later rather than be failed, since the other consumer may still deliver it.
+ */
+public class JobInProgressException extends RuntimeException {
+
+    public JobInProgressException(String notificationId) {
+        super("Job " + notificationId + " is being processed by another consumer");
+    }
+}
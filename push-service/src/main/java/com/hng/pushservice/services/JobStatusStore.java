@@ -0,0 +1,267 @@
+package com.hng.pushservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Idempotency state of push jobs, kept in Redis for a bounded window.
+ *
+ * A consumer must claim a job before working on it. The claim is one atomic script call
+ * that either reports the job as already finished, reports it as leased by another
+ * consumer, or writes PROCESSING:&lt;owner&gt; to status:&lt;notificationId&gt; with a
+ * lease TTL. The lease is later extended or replaced by the final status. The *All
+ * variants pipeline the same commands for a whole batch into one round-trip.
+ *
+ * Final statuses only have to outlive app.push.idempotency.window, and are stored in one
+ * of two layouts (app.push.idempotency.layout):
+ * <ul>
+ *   <li>keys: status:&lt;id&gt; holds the final status with a TTL of the window.</li>
+ *   <li>buckets: the final status goes into a small hash status:bucket:&lt;time&gt;:&lt;shard&gt;
+ *       that expires as a whole; the claim checks every bucket still inside the window
+ *       (one HGET per bucket, 25 for 24h in 1h buckets). Hashes under 128 entries use
+ *       Redis' compact encoding, which roughly halves memory per job, so bucket-shards has
+ *       to grow with the volume per bucket.</li>
+ * </ul>
+ * Jobs seen as completed are also remembered in a local near-cache, so repeated
+ * duplicates of hot ids are answered without a Redis call.
+ */
+@Service
+public class JobStatusStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusStore.class);
+
+    public static final String DELIVERED = "DELIVERED";
+    public static final String SKIPPED = "SKIPPED";
+    public static final String FAILED = "FAILED";
+    /** Replaced by a newer job with the same collapse key before it was sent; final like DELIVERED. */
+    public static final String SUPERSEDED = "SUPERSEDED";
+
+    private static final String PROCESSING_PREFIX = "PROCESSING:";
+
+    // KEYS[1] is status:<id>, any further keys are the buckets to search; ARGV[3] is the id
+    private static final String CLAIM_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if current == 'DELIVERED' or current == 'SKIPPED' or current == 'SUPERSEDED' then
+                return 'COMPLETED'
+            end
+            for i = 2, #KEYS do
+                local status = redis.call('HGET', KEYS[i], ARGV[3])
+                if status == 'DELIVERED' or status == 'SKIPPED' or status == 'SUPERSEDED' then
+                    return 'COMPLETED'
+                end
+            end
+            if current and string.sub(current, 1, 11) == 'PROCESSING:' then
+                return 'IN_PROGRESS'
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 'CLAIMED'
+            """;
+
+    private static final String EXTEND_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """;
+
+    private static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """;
+
+    public enum ClaimResult {
+        /** This consumer now holds the lease and should process the job. */
+        CLAIMED,
+        /** The job was already delivered, skipped or superseded. */
+        COMPLETED,
+        /** Another consumer holds a live lease on the job. */
+        IN_PROGRESS
+    }
+
+    public enum Layout {
+        KEYS,
+        BUCKETS
+    }
+
+    private static final RedisScript<String> CLAIM = new DefaultRedisScript<>(CLAIM_SCRIPT, String.class);
+    private static final RedisScript<Long> EXTEND = new DefaultRedisScript<>(EXTEND_SCRIPT, Long.class);
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(RELEASE_SCRIPT, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String leaseValue;
+    private final String leaseMillis;
+    private final Duration window;
+    private final Layout layout;
+    private final long bucketSpanMillis;
+    private final int bucketShards;
+    private final Cache<String, Boolean> completedNearCache;
+
+    public JobStatusStore(StringRedisTemplate redisTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.push.idempotency.lease-ttl:60s}") Duration leaseTtl,
+                          @Value("${app.push.idempotency.window:24h}") Duration window,
+                          @Value("${app.push.idempotency.layout:keys}") Layout layout,
+                          @Value("${app.push.idempotency.bucket-span:1h}") Duration bucketSpan,
+                          @Value("${app.push.idempotency.bucket-shards:1024}") int bucketShards,
+                          @Value("${app.push.idempotency.near-cache-size:100000}") long nearCacheSize) {
+        this.redisTemplate = redisTemplate;
+        this.leaseValue = PROCESSING_PREFIX + UUID.randomUUID();
+        this.leaseMillis = String.valueOf(leaseTtl.toMillis());
+        this.window = window;
+        this.layout = layout;
+        this.bucketSpanMillis = bucketSpan.toMillis();
+        this.bucketShards = bucketShards;
+        this.completedNearCache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(nearCacheSize)
+                .expireAfterWrite(window)
+                .recordStats()
+                .<String, Boolean>build(), "push.job-status.near-cache");
+    }
+
+    public ClaimResult claim(String notificationId) {
+        if (completedNearCache.getIfPresent(notificationId) != null) {
+            return ClaimResult.COMPLETED;
+        }
+        String result = redisTemplate.execute(CLAIM, claimKeys(notificationId), leaseValue, leaseMillis, notificationId);
+        return remember(notificationId, ClaimResult.valueOf(result));
+    }
+
+    public List<ClaimResult> claimAll(List<String> notificationIds) {
+        List<ClaimResult> claims = new ArrayList<>(notificationIds.size());
+        List<Integer> uncached = new ArrayList<>(notificationIds.size());
+        for (int i = 0; i < notificationIds.size(); i++) {
+            boolean completed = completedNearCache.getIfPresent(notificationIds.get(i)) != null;
+            claims.add(completed ? ClaimResult.COMPLETED : null);
+            if (!completed) {
+                uncached.add(i);
+            }
+        }
+        if (uncached.isEmpty()) {
+            return claims;
+        }
+
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (int index : uncached) {
+                String notificationId = notificationIds.get(index);
+                List<String> keysAndArgs = new ArrayList<>(claimKeys(notificationId));
+                int keyCount = keysAndArgs.size();
+                keysAndArgs.add(leaseValue);
+                keysAndArgs.add(leaseMillis);
+                keysAndArgs.add(notificationId);
+                stringConnection.eval(CLAIM_SCRIPT, ReturnType.VALUE, keyCount, keysAndArgs.toArray(new String[0]));
+            }
+            return null;
+        });
+
+        for (int i = 0; i < uncached.size(); i++) {
+            int index = uncached.get(i);
+            ClaimResult claim = ClaimResult.valueOf(String.valueOf(results.get(i)));
+            claims.set(index, remember(notificationIds.get(index), claim));
+        }
+        return claims;
+    }
+
+    /** Pushes the lease out again, as long as this consumer still holds it. */
+    public void extendAll(Collection<String> notificationIds) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            for (String notificationId : notificationIds) {
+                stringConnection.eval(EXTEND_SCRIPT, ReturnType.INTEGER, 1,
+                        statusKey(notificationId), leaseValue, leaseMillis);
+            }
+            return null;
+        });
+    }
+
+    public void extend(String notificationId) {
+        redisTemplate.execute(EXTEND, List.of(statusKey(notificationId)), leaseValue, leaseMillis);
+    }
+
+    /** Drops this consumer's lease without recording a status, so the job can be claimed again. */
+    public void release(String notificationId) {
+        redisTemplate.execute(RELEASE, List.of(statusKey(notificationId)), leaseValue);
+    }
+
+    public void finish(String notificationId, String status) {
+        finishAll(Map.of(notificationId, status));
+    }
+
+    public void finishAll(Map<String, String> statusesById) {
+        if (statusesById.isEmpty()) {
+            return;
+        }
+        logger.debug("Recording final status for {} jobs", statusesById.size());
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            statusesById.forEach((notificationId, status) -> {
+                if (layout == Layout.BUCKETS) {
+                    String bucketKey = bucketKey(System.currentTimeMillis() / bucketSpanMillis, notificationId);
+                    stringConnection.hSet(bucketKey, notificationId, status);
+                    stringConnection.pExpire(bucketKey, window.toMillis() + bucketSpanMillis);
+                    stringConnection.del(statusKey(notificationId));
+                } else {
+                    stringConnection.pSetEx(statusKey(notificationId), window.toMillis(), status);
+                }
+            });
+            return null;
+        });
+
+        statusesById.forEach((notificationId, status) -> {
+            if (DELIVERED.equals(status) || SKIPPED.equals(status) || SUPERSEDED.equals(status)) {
+                completedNearCache.put(notificationId, Boolean.TRUE);
+            }
+        });
+    }
+
+    private ClaimResult remember(String notificationId, ClaimResult claim) {
+        if (claim == ClaimResult.COMPLETED) {
+            completedNearCache.put(notificationId, Boolean.TRUE);
+        }
+        return claim;
+    }
+
+    private List<String> claimKeys(String notificationId) {
+        if (layout != Layout.BUCKETS) {
+            return List.of(statusKey(notificationId));
+        }
+        long currentBucket = System.currentTimeMillis() / bucketSpanMillis;
+        long bucketsInWindow = window.toMillis() / bucketSpanMillis;
+        List<String> keys = new ArrayList<>((int) bucketsInWindow + 2);
+        keys.add(statusKey(notificationId));
+        for (long bucket = currentBucket; bucket >= currentBucket - bucketsInWindow; bucket--) {
+            keys.add(bucketKey(bucket, notificationId));
+        }
+        return keys;
+    }
+
+    private String bucketKey(long bucket, String notificationId) {
+        return "status:bucket:" + bucket + ":" + Math.floorMod(notificationId.hashCode(), bucketShards);
+    }
+
+    private static String statusKey(String notificationId) {
+        return "status:" + notificationId;
+    }
+}
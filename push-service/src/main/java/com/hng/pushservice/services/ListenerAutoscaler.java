@@ -0,0 +1,246 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.AutoscaleProperties;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sizes the normal lane's listener container from what the service sees every interval:
+ * <ul>
+ *   <li>Downstream trouble first: if user/template calls fail more than max-error-rate or their
+ *       mean latency goes above max-latency, consumers and prefetch are halved (multiplicative
+ *       back-off, like the FCM limiter), after the shorter downstream-cooldown instead of the
+ *       cooldown.</li>
+ *   <li>Backlog: more than backlog-per-consumer messages ready per consumer adds step consumers
+ *       and doubles the prefetch.</li>
+ *   <li>Idle: an empty queue with less than half the consumers busy removes one consumer and
+ *       halves the prefetch.</li>
+ * </ul>
+ * Everything stays within the configured bounds, and nothing changes while consumption is
+ * paused. Gateway calls are left out of the downstream signal: status reports are buffered
+ * and never hold up a consumer.
+ *
+ * Consumer count changes apply live. A consumer's prefetch is fixed once it is started, so a
+ * prefetch change (single mode only) is set on the container and taken up by the consumers it
+ * starts from then on; the container is never restarted for it.
+ * Every step is counted in push.autoscale.decisions and published as a {@link ListenerScaledEvent}.
+ */
+@Service
+@ConditionalOnProperty(name = "app.push.autoscale.enabled", havingValue = "true")
+public class ListenerAutoscaler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerAutoscaler.class);
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final PushLaneMetrics laneMetrics;
+    private final PushMetrics metrics;
+    private final ListenerPauseControl pauseControl;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final AutoscaleProperties properties;
+    private final boolean scalePrefetch;
+
+    private final AtomicInteger consumers = new AtomicInteger();
+    private final AtomicInteger prefetch = new AtomicInteger();
+    private long lastChangeMillis;
+    private long lastDownstreamCount;
+    private double lastDownstreamErrors;
+    private long lastTimedCalls;
+    private double lastDownstreamNanos;
+
+    private ScheduledExecutorService scheduler;
+
+    public ListenerAutoscaler(RabbitListenerEndpointRegistry listenerRegistry,
+                              PushLaneMetrics laneMetrics,
+                              PushMetrics metrics,
+                              ListenerPauseControl pauseControl,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry,
+                              AutoscaleProperties properties,
+                              @Value("${app.push.consumer.mode:single}") String consumerMode) {
+        this.listenerRegistry = listenerRegistry;
+        this.laneMetrics = laneMetrics;
+        this.metrics = metrics;
+        this.pauseControl = pauseControl;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.properties = properties;
+        this.scalePrefetch = "single".equals(consumerMode);
+        this.prefetch.set(properties.getMaxPrefetch());
+
+        Gauge.builder("push.autoscale.consumers", consumers, AtomicInteger::get)
+                .description("Consumers the autoscaler has set on the normal lane")
+                .register(meterRegistry);
+        Gauge.builder("push.autoscale.prefetch", prefetch, AtomicInteger::get)
+                .description("Prefetch the autoscaler has set on the normal lane")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "push-autoscaler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void tick() {
+        try {
+            SimpleMessageListenerContainer container = container();
+            if (container == null) {
+                return;
+            }
+            if (consumers.get() == 0) {
+                consumers.set(clamp(container.getActiveConsumerCount(), properties.getMinConsumers(), properties.getMaxConsumers()));
+            }
+            // Read the downstream counters every tick, so the next tick only sees its own interval
+            double errorRate = downstreamErrorRate();
+            double latencyNanos = downstreamMeanLatencyNanos();
+            if (pauseControl.isPaused()) {
+                return;
+            }
+            decide(container, errorRate, latencyNanos);
+        } catch (Exception e) {
+            logger.warn("Autoscaler tick failed: {}", e.getMessage());
+        }
+    }
+
+    private void decide(SimpleMessageListenerContainer container, double errorRate, double latencyNanos) {
+        int current = consumers.get();
+        int currentPrefetch = prefetch.get();
+
+        long sinceLastChange = System.currentTimeMillis() - lastChangeMillis;
+        if (errorRate > properties.getMaxErrorRate() || latencyNanos > properties.getMaxLatency().toNanos()) {
+            if (sinceLastChange < properties.getDownstreamCooldown().toMillis()) {
+                return;
+            }
+            String reason = errorRate > properties.getMaxErrorRate() ? "downstream_errors" : "downstream_latency";
+            apply(container, "down", reason, Math.max(properties.getMinConsumers(), current / 2),
+                    Math.max(properties.getMinPrefetch(), currentPrefetch / 2));
+            return;
+        }
+        if (sinceLastChange < properties.getCooldown().toMillis()) {
+            return;
+        }
+
+        long depth = laneMetrics.getDepth(PushLane.NORMAL);
+        if (depth > (long) current * properties.getBacklogPerConsumer()) {
+            apply(container, "up", "backlog", Math.min(properties.getMaxConsumers(), current + properties.getStep()),
+                    Math.min(properties.getMaxPrefetch(), currentPrefetch * 2));
+        } else if (depth == 0 && metrics.getInFlight() < current / 2.0) {
+            apply(container, "down", "idle", Math.max(properties.getMinConsumers(), current - 1),
+                    Math.max(properties.getMinPrefetch(), currentPrefetch / 2));
+        }
+    }
+
+    private void apply(SimpleMessageListenerContainer container, String direction, String reason,
+                       int newConsumers, int newPrefetch) {
+        int previousConsumers = consumers.get();
+        int previousPrefetch = prefetch.get();
+        if (!scalePrefetch) {
+            newPrefetch = previousPrefetch;
+        }
+        if (newConsumers == previousConsumers && newPrefetch == previousPrefetch) {
+            return;
+        }
+
+        if (newPrefetch != previousPrefetch) {
+            // Taken up by consumers started from now on, including those added just below
+            container.setPrefetchCount(newPrefetch);
+        }
+        container.setConcurrentConsumers(newConsumers);
+        consumers.set(newConsumers);
+        prefetch.set(newPrefetch);
+        lastChangeMillis = System.currentTimeMillis();
+
+        logger.info("Scaled push consumers {} ({}): consumers {} -> {}, prefetch {} -> {}",
+                direction, reason, previousConsumers, newConsumers, previousPrefetch, newPrefetch);
+        Counter.builder("push.autoscale.decisions")
+                .description("Scaling steps taken on the normal lane")
+                .tag("direction", direction)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        eventPublisher.publishEvent(new ListenerScaledEvent(direction, reason,
+                previousConsumers, newConsumers, previousPrefetch, newPrefetch));
+    }
+
+    private SimpleMessageListenerContainer container() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(RabbitMQConfig.PUSH_LISTENER_ID);
+        return container instanceof SimpleMessageListenerContainer simple ? simple : null;
+    }
+
+    private double downstreamErrorRate() {
+        long count = 0;
+        double errors = 0;
+        for (Timer timer : downstreamTimers()) {
+            count += timer.count();
+            String outcome = timer.getId().getTag("outcome");
+            if (!"success".equals(outcome) && !"client_error".equals(outcome)) {
+                errors += timer.count();
+            }
+        }
+        long calls = count - lastDownstreamCount;
+        double failed = errors - lastDownstreamErrors;
+        lastDownstreamCount = count;
+        lastDownstreamErrors = errors;
+        return calls > 0 ? failed / calls : 0;
+    }
+
+    private double downstreamMeanLatencyNanos() {
+        long count = 0;
+        double nanos = 0;
+        for (Timer timer : downstreamTimers()) {
+            // Refused calls (open breaker, full bulkhead) take no time and would drag the mean down
+            String outcome = timer.getId().getTag("outcome");
+            if ("circuit_open".equals(outcome) || "bulkhead_full".equals(outcome)) {
+                continue;
+            }
+            count += timer.count();
+            nanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        double delta = nanos - lastDownstreamNanos;
+        lastDownstreamNanos = nanos;
+        long calls = count - lastTimedCalls;
+        lastTimedCalls = count;
+        return calls > 0 ? delta / calls : 0;
+    }
+
+    private Iterable<Timer> downstreamTimers() {
+        return meterRegistry.find("push.downstream.requests").timers().stream()
+                .filter(timer -> !"gateway".equals(timer.getId().getTag("client")))
+                .toList();
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
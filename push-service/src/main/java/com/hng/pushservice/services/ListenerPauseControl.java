@@ -0,0 +1,94 @@
+package com.hng.pushservice.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops and restarts the RabbitMQ listener containers. Several reasons can hold consumption
+ * paused at once (an open circuit breaker, for example); the containers only start again
+ * when the last one is released. Containers are stopped and started on a separate thread,
+ * since stopping waits for in-flight deliveries and may be requested from a listener thread.
+ */
+@Service
+@RequiredArgsConstructor
+public class ListenerPauseControl {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerPauseControl.class);
+
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+
+    private final Set<String> pauseReasons = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> pausedUntil = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "push-listener-control");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void pause(String reason) {
+        if (pauseReasons.add(reason)) {
+            logger.warn("Pausing push consumption: {}", reason);
+            executor.execute(this::apply);
+        }
+    }
+
+    /**
+     * Pauses now and releases this reason again after the given time. Pausing again for the
+     * same reason only ever pushes the release out, never brings it forward.
+     */
+    public void pauseFor(String reason, Duration duration) {
+        long until = System.currentTimeMillis() + duration.toMillis();
+        pausedUntil.merge(reason, until, Math::max);
+        pause(reason);
+        executor.schedule(() -> {
+            Long deadline = pausedUntil.get(reason);
+            if (deadline != null && deadline <= System.currentTimeMillis()) {
+                resume(reason);
+            }
+        }, duration.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void resume(String reason) {
+        pausedUntil.remove(reason);
+        if (pauseReasons.remove(reason)) {
+            logger.info("Released pause on push consumption: {}", reason);
+            executor.execute(this::apply);
+        }
+    }
+
+    public boolean isPaused() {
+        return !pauseReasons.isEmpty();
+    }
+
+    public Set<String> getPauseReasons() {
+        return Set.copyOf(pauseReasons);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void apply() {
+        boolean paused = isPaused();
+        listenerRegistry.getListenerContainers().forEach(container -> {
+            if (paused && container.isRunning()) {
+                container.stop();
+            } else if (!paused && !container.isRunning()) {
+                container.start();
+            }
+        });
+    }
+}
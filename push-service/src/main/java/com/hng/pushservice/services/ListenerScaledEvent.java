@@ -0,0 +1,21 @@
+package com.hng.pushservice.services;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/** Published by {@link ListenerAutoscaler} for every change to the normal lane's consumers. */
+@Data
+@AllArgsConstructor
+public class ListenerScaledEvent {
+
+    /** up or down. */
+    private String direction;
+
+    /** backlog, idle, downstream_errors or downstream_latency. */
+    private String reason;
+
+    private int previousConsumers;
+    private int consumers;
+    private int previousPrefetch;
+    private int prefetch;
+}
@@ -0,0 +1,123 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.dto.CompiledTemplateDto;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.TemplateDefinitionDto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template copied from template-service in compiled form, rendered the same way
+ * template-service renders it: the literals with the values of the named slots in between,
+ * into a builder sized to the output. Parsing stays in template-service, so the two can not
+ * disagree about what a placeholder is.
+ */
+final class LocalTemplate {
+
+    private final String eTag;
+    private final int version;
+    private final Field subject;
+    private final Field body;
+    private final Field imageUrl;
+    private final Field actionLink;
+
+    private volatile long checkedAt;
+
+    LocalTemplate(TemplateDefinitionDto definition, String eTag, long checkedAt) {
+        this.eTag = eTag;
+        this.version = definition.getVersion() != null ? definition.getVersion() : 0;
+        this.subject = Field.of(definition.getSubject());
+        this.body = Field.of(definition.getBody());
+        this.imageUrl = Field.of(definition.getImageUrl());
+        this.actionLink = Field.of(definition.getActionLink());
+        this.checkedAt = checkedAt;
+    }
+
+    String getETag() {
+        return eTag;
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    long getCheckedAt() {
+        return checkedAt;
+    }
+
+    /** template-service said this copy is still current. */
+    void checked(long at) {
+        checkedAt = at;
+    }
+
+    /**
+     * Renders the template, or returns null when a variable is missing: what happens then
+     * (an empty slot, or a failure in strict mode) is for template-service to decide.
+     */
+    RenderResponseDto render(Map<String, String> variables) {
+        String renderedSubject = Field.render(subject, variables);
+        String renderedBody = Field.render(body, variables);
+        String renderedImageUrl = Field.render(imageUrl, variables);
+        String renderedActionLink = Field.render(actionLink, variables);
+        if (renderedSubject == Field.MISSING || renderedBody == Field.MISSING
+                || renderedImageUrl == Field.MISSING || renderedActionLink == Field.MISSING) {
+            return null;
+        }
+        return new RenderResponseDto(renderedSubject, renderedBody, renderedImageUrl, renderedActionLink);
+    }
+
+    private static final class Field {
+
+        // Returned by render when a slot has no value; compared by identity
+        private static final String MISSING = new String("missing");
+
+        private final String[] literals;
+        private final String[] names;
+        private final int literalLength;
+
+        private Field(List<String> literals, List<String> names) {
+            if (literals == null || names == null || literals.size() != names.size() + 1) {
+                throw new IllegalArgumentException("Compiled template needs one more literal than names");
+            }
+            this.literals = literals.toArray(String[]::new);
+            this.names = names.toArray(String[]::new);
+            int length = 0;
+            for (String literal : this.literals) {
+                length += literal.length();
+            }
+            this.literalLength = length;
+        }
+
+        /** Null for a field the template does not set, which renders as null. */
+        private static Field of(CompiledTemplateDto compiled) {
+            return compiled != null ? new Field(compiled.getLiterals(), compiled.getNames()) : null;
+        }
+
+        private static String render(Field field, Map<String, String> variables) {
+            if (field == null) {
+                return null;
+            }
+            if (field.names.length == 0) {
+                return field.literals[0];
+            }
+            if (variables == null) {
+                return MISSING;
+            }
+            int length = field.literalLength;
+            for (String name : field.names) {
+                String value = variables.get(name);
+                if (value == null) {
+                    return MISSING;
+                }
+                length += value.length();
+            }
+            StringBuilder output = new StringBuilder(length);
+            for (int i = 0; i < field.names.length; i++) {
+                output.append(field.literals[i]).append(variables.get(field.names[i]));
+            }
+            output.append(field.literals[field.names.length]);
+            return output.toString();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.hng.pushservice.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One step of the push pipeline: a fixed number of workers in front of a bounded queue.
+ * Handing work to a stage whose queue is full blocks the caller, so a saturated stage
+ * stalls the stage before it and, in the end, the listener thread itself.
+ */
+public class PipelineStage {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+
+    public PipelineStage(String name, int concurrency, int queueCapacity) {
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(name), PipelineStage::waitForQueueSpace);
+        this.executor.prestartAllCoreThreads();
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> step) {
+        return CompletableFuture.supplyAsync(step, executor);
+    }
+
+    public <T, R> CompletableFuture<R> then(CompletableFuture<T> upstream, Function<T, R> step) {
+        return upstream.thenApplyAsync(step, executor);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Pipeline stage {} did not drain in time", name);
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitForQueueSpace(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Pipeline stage is shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for pipeline stage", e);
+        }
+    }
+
+    /**
+     * Virtual threads when the runtime has them (the Docker image runs on Java 21),
+     * otherwise daemon platform threads. Looked up reflectively because the build targets 17.
+     */
+    private static ThreadFactory threadFactory(String name) {
+        String prefix = "push-" + name + "-";
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return task -> {
+                Thread thread = new Thread(task, prefix + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
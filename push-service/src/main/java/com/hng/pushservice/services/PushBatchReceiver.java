@@ -0,0 +1,227 @@
+package com.hng.pushservice.services;
+
+import com.google.firebase.messaging.SendResponse;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.dto.PushRequest;
+import com.rabbitmq.client.Channel;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch consumption of push.queue. The whole batch is claimed in one Redis round-trip,
+ * every job is then prepared individually, the survivors go to FCM through one sendEach
+ * call per 500 messages, and each message is acked or nacked according to its own
+ * SendResponse. Failed jobs are re-published to the retry queues and acked; only jobs
+ * that are out of attempts, or whose outcome could not be recorded, are nacked to the
+ * dead-letter queue.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.push.consumer.mode", havingValue = "batch")
+public class PushBatchReceiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushBatchReceiver.class);
+
+    private static final ParameterizedTypeReference<JobRequestDto> JOB_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final FcmService fcmService;
+    private final PushJobProcessor jobProcessor;
+    private final JobStatusStore jobStatusStore;
+    private final Jackson2JsonMessageConverter messageConverter;
+    private final PushLaneMetrics laneMetrics;
+    private final PushMetrics metrics;
+    private final ScheduledDelivery scheduledDelivery;
+    private final CollapseBuffer collapseBuffer;
+
+    @RabbitListener(id = RabbitMQConfig.PUSH_LISTENER_ID, queues = RabbitMQConfig.PUSH_QUEUE, containerFactory = "batchRabbitListenerContainerFactory")
+    public void consumePushBatch(List<Message> messages, Channel channel) throws IOException {
+        logger.info("Received batch of {} push jobs", messages.size());
+        metrics.received(messages.size());
+        try {
+            settleBatch(messages, channel);
+        } finally {
+            metrics.settled(messages.size());
+        }
+    }
+
+    private void settleBatch(List<Message> messages, Channel channel) throws IOException {
+
+        List<Long> jobTags = new ArrayList<>(messages.size());
+        List<Integer> jobAttempts = new ArrayList<>(messages.size());
+        List<JobRequestDto> jobs = new ArrayList<>(messages.size());
+
+        for (Message message : messages) {
+            long deliveryTag = message.getMessageProperties().getDeliveryTag();
+            try {
+                JobRequestDto jobRequestDto = (JobRequestDto) messageConverter.fromMessage(message, JOB_TYPE);
+                int attempt = PushRetryPublisher.attemptOf(message);
+                if (scheduledDelivery.defer(jobRequestDto, PushLane.NORMAL, attempt)
+                        || collapseBuffer.hold(jobRequestDto, PushLane.NORMAL, attempt)) {
+                    channel.basicAck(deliveryTag, false);
+                    continue;
+                }
+                laneMetrics.received(PushLane.NORMAL, jobRequestDto, attempt);
+                jobs.add(jobRequestDto);
+                jobTags.add(deliveryTag);
+                jobAttempts.add(attempt);
+            } catch (Exception e) {
+                logger.error("Rejecting unreadable push job: {}", e.getMessage());
+                channel.basicNack(deliveryTag, false, false);
+            }
+        }
+
+        // One pipelined round-trip claims every job in the batch
+        List<String> jobIds = jobs.stream().map(JobRequestDto::getNotificationId).toList();
+        List<JobStatusStore.ClaimResult> claims;
+        try {
+            claims = metrics.timeBatch(PushMetrics.Stage.DEDUP, () -> jobStatusStore.claimAll(jobIds));
+        } catch (Exception e) {
+            // Without the claims nothing can be sent, but every message still has to be settled
+            logger.error("Failed to claim batch of {} push jobs: {}", jobs.size(), e.getMessage(), e);
+            for (int i = 0; i < jobs.size(); i++) {
+                boolean retried;
+                try {
+                    retried = jobProcessor.retryUnclaimed(jobs.get(i), PushLane.NORMAL, jobAttempts.get(i), e);
+                } catch (RuntimeException retryError) {
+                    logDeadLettered(jobs.get(i).getNotificationId(), retryError);
+                    retried = false;
+                }
+                if (retried) {
+                    channel.basicAck(jobTags.get(i), false);
+                } else {
+                    channel.basicNack(jobTags.get(i), false, false);
+                }
+            }
+            return;
+        }
+
+        List<Long> deliveryTags = new ArrayList<>(jobs.size());
+        List<JobRequestDto> sentJobs = new ArrayList<>(jobs.size());
+        List<Integer> sentAttempts = new ArrayList<>(jobs.size());
+        List<PushRequest> fcmRequests = new ArrayList<>(jobs.size());
+
+        for (int i = 0; i < jobs.size(); i++) {
+            JobRequestDto jobRequestDto = jobs.get(i);
+            String notificationId = jobRequestDto.getNotificationId();
+            long deliveryTag = jobTags.get(i);
+
+            try {
+                PushRequest fcmRequest = jobProcessor.isClaimed(notificationId, claims.get(i))
+                        ? jobProcessor.prepareClaimed(jobRequestDto)
+                        : null;
+                if (fcmRequest == null) {
+                    channel.basicAck(deliveryTag, false);
+                    continue;
+                }
+                deliveryTags.add(deliveryTag);
+                sentJobs.add(jobRequestDto);
+                sentAttempts.add(jobAttempts.get(i));
+                fcmRequests.add(fcmRequest);
+            } catch (Exception e) {
+                if (!PushRetryPublisher.isTransientRefusal(e)) {
+                    logger.error("Failed to prepare notificationId {}: {}", notificationId, e.getMessage(), e);
+                }
+                boolean retried;
+                try {
+                    retried = jobProcessor.retry(jobRequestDto, PushLane.NORMAL, jobAttempts.get(i), e);
+                    if (!retried) {
+                        jobProcessor.markFailed(notificationId, e.getMessage());
+                    }
+                } catch (RuntimeException settleError) {
+                    logDeadLettered(notificationId, settleError);
+                    retried = false;
+                }
+                if (retried) {
+                    channel.basicAck(deliveryTag, false);
+                } else {
+                    channel.basicNack(deliveryTag, false, false);
+                }
+            }
+        }
+
+        if (fcmRequests.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> errorsById = new LinkedHashMap<>();
+        List<Exception> errors = new ArrayList<>(fcmRequests.size());
+        try {
+            jobProcessor.extendLeases(fcmRequests.stream().map(PushRequest::getNotificationId).toList());
+            List<SendResponse> responses = fcmService.sendEach(fcmRequests);
+            for (SendResponse response : responses) {
+                errors.add(response.isSuccessful() ? null
+                        : response.getException() != null ? FcmSendException.from(response.getException())
+                        : new RuntimeException("unknown FCM error"));
+            }
+        } catch (Exception e) {
+            logger.error("FCM batch of {} failed as a whole: {}", fcmRequests.size(), e.getMessage(), e);
+            errors.clear();
+            fcmRequests.forEach(fcmRequest -> errors.add(e));
+        }
+
+        // Failed sends go to the retry queues; only those out of attempts are failed for good.
+        // Retried jobs and dead tokens are settled already and only need the ack. A job whose
+        // outcome could not be recorded (Redis or the broker down) is dead-lettered, and every
+        // tag is settled whatever fails, so none holds a prefetch slot.
+        boolean[] acked = new boolean[fcmRequests.size()];
+        try {
+            for (int i = 0; i < fcmRequests.size(); i++) {
+                String notificationId = fcmRequests.get(i).getNotificationId();
+                Exception error = errors.get(i);
+                if (error == null) {
+                    errorsById.put(notificationId, null);
+                    continue;
+                }
+                logger.error("Failed to send push notification {}: {}", notificationId, error.getMessage());
+                try {
+                    // A dead token is a final outcome, not a message worth dead-lettering
+                    acked[i] = jobProcessor.retireIfDeadToken(fcmRequests.get(i), error)
+                            || jobProcessor.retry(sentJobs.get(i), PushLane.NORMAL, sentAttempts.get(i), error);
+                    if (!acked[i]) {
+                        errorsById.put(notificationId, error.getMessage());
+                    }
+                } catch (RuntimeException settleError) {
+                    logDeadLettered(notificationId, settleError);
+                }
+            }
+
+            try {
+                jobProcessor.markAll(errorsById);
+                for (int i = 0; i < fcmRequests.size(); i++) {
+                    acked[i] |= errors.get(i) == null;
+                }
+            } catch (RuntimeException e) {
+                logger.error("Failed to record the outcome of {} push jobs, dead-lettering the delivered ones: {}",
+                        errorsById.size(), e.getMessage(), e);
+            }
+        } finally {
+            for (int i = 0; i < fcmRequests.size(); i++) {
+                if (acked[i]) {
+                    channel.basicAck(deliveryTags.get(i), false);
+                } else {
+                    channel.basicNack(deliveryTags.get(i), false, false);
+                }
+            }
+        }
+    }
+
+    private static void logDeadLettered(String notificationId, Exception error) {
+        logger.error("Failed to record the outcome of notificationId {}, dead-lettering it: {}",
+                notificationId, error.getMessage(), error);
+    }
+}
@@ -0,0 +1,27 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.FanOutJobDto;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+/** Consumes campaign slices from push.fanout.queue, whatever app.push.consumer.mode is. */
+@Service
+@RequiredArgsConstructor
+public class PushFanOutReceiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushFanOutReceiver.class);
+
+    private final FanOutJobProcessor fanOutJobProcessor;
+
+    @RabbitListener(queues = RabbitMQConfig.PUSH_FANOUT_QUEUE, concurrency = "${app.push.fanout.concurrency:2}")
+    public void consumeFanOutQueue(FanOutJobDto fanOutJobDto,
+                                   @Header(name = PushRetryPublisher.ATTEMPT_HEADER, required = false, defaultValue = "1") int attempt) {
+        logger.info("Received fan-out job for notificationId: {}", fanOutJobDto.getNotificationId());
+        fanOutJobProcessor.process(fanOutJobDto, attempt);
+    }
+}
@@ -0,0 +1,279 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.dto.*;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The per-job steps shared by every consumption mode: duplicate check, user lookup,
+ * template rendering and the final status bookkeeping in Redis and the gateway.
+ */
+@Service
+@RequiredArgsConstructor
+public class PushJobProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushJobProcessor.class);
+
+    private final JobStatusStore jobStatusStore;
+    private final TemplateStore templateStore;
+    private final UserProfileCache userProfileCache;
+    private final StatusReporter statusReporter;
+    private final PushRetryPublisher retryPublisher;
+    private final FcmService fcmService;
+    private final DeadTokenRegistry deadTokenRegistry;
+    private final UserServiceClient userServiceClient;
+    private final PushMetrics metrics;
+
+    @Value("${app.push.dead-tokens.clear-upstream:false}")
+    private boolean clearDeadTokensUpstream;
+
+    /**
+     * Runs one job start to finish on the calling thread. Failures are handed to the retry
+     * queues; once the job is out of attempts it is marked failed and rejected, which sends
+     * it to the dead-letter queue.
+     */
+    public void process(JobRequestDto jobRequestDto, PushLane lane, int attempt) {
+        String notificationId = jobRequestDto.getNotificationId();
+        PushRequest fcmRequest = null;
+        metrics.received(1);
+        try {
+            fcmRequest = prepare(jobRequestDto);
+            if (fcmRequest == null) {
+                return;
+            }
+
+            // Send push notification
+            fcmService.sendPushNotification(fcmRequest);
+
+            // Mark as successful
+            markDelivered(notificationId);
+
+        } catch (Exception e) {
+            if (fcmRequest != null && retireIfDeadToken(fcmRequest, e)) {
+                return;
+            }
+            if (!PushRetryPublisher.isTransientRefusal(e)) {
+                logger.error("Failed to process notificationId {}: {}", notificationId, e.getMessage(), e);
+            }
+            if (retry(jobRequestDto, lane, attempt, e)) {
+                return;
+            }
+            markFailed(notificationId, e.getMessage());
+            throw new AmqpRejectAndDontRequeueException("Out of retries for notificationId " + notificationId, e);
+        } finally {
+            metrics.settled(1);
+        }
+    }
+
+    /**
+     * Claims the job and runs everything up to the FCM send. Returns null when the job must
+     * not be sent (already completed, or the user is not eligible); in that case its status
+     * is already recorded. Throws JobInProgressException while another consumer holds the lease.
+     */
+    public PushRequest prepare(JobRequestDto jobRequestDto) {
+        if (!claim(jobRequestDto.getNotificationId())) {
+            return null;
+        }
+        return prepareClaimed(jobRequestDto);
+    }
+
+    /** The part of {@link #prepare} after the claim, for callers that claimed in bulk. */
+    public PushRequest prepareClaimed(JobRequestDto jobRequestDto) {
+        String notificationId = jobRequestDto.getNotificationId();
+
+        // Fetch and validate user
+        UserResponseDto user = fetchUser(jobRequestDto.getUserId());
+        if (!isUserEligibleForPush(user, notificationId)) {
+            return null;
+        }
+
+        // Render template
+        RenderResponseDto renderedData = renderTemplate(jobRequestDto);
+
+        return buildPushRequest(user, renderedData, jobRequestDto);
+    }
+
+    /**
+     * Returns true when this consumer now owns the job, false when it was already completed.
+     */
+    public boolean claim(String notificationId) {
+        return isClaimed(notificationId, metrics.time(PushMetrics.Stage.DEDUP, () -> jobStatusStore.claim(notificationId)));
+    }
+
+    public boolean isClaimed(String notificationId, JobStatusStore.ClaimResult claim) {
+        switch (claim) {
+            case CLAIMED:
+                return true;
+            case COMPLETED:
+                logger.warn("Duplicate or completed job {}. Skipping.", notificationId);
+                metrics.outcome(PushMetrics.Outcome.DUPLICATE);
+                return false;
+            default:
+                logger.warn("Job {} is being processed by another consumer.", notificationId);
+                throw new JobInProgressException(notificationId);
+        }
+    }
+
+    /** Keeps the lease alive for jobs that waited a while before the FCM send. */
+    public void extendLease(String notificationId) {
+        jobStatusStore.extend(notificationId);
+    }
+
+    public void extendLeases(Collection<String> notificationIds) {
+        jobStatusStore.extendAll(notificationIds);
+    }
+
+    /**
+     * Hands a failed job to the retry queues. Returns false when it is out of attempts;
+     * the caller should then mark it failed and dead-letter it. The lease is given up so
+     * the retried delivery can claim the job, unless the lease was never ours.
+     */
+    public boolean retry(JobRequestDto jobRequestDto, PushLane lane, int attempt, Throwable error) {
+        if (!retryUnclaimed(jobRequestDto, lane, attempt, error)) {
+            return false;
+        }
+        if (!PushRetryPublisher.isInProgress(error)) {
+            jobStatusStore.release(jobRequestDto.getNotificationId());
+        }
+        return true;
+    }
+
+    /**
+     * Like {@link #retry}, for a job whose claim failed: whether it holds the lease is
+     * unknown, so nothing is released and a leftover lease simply runs out.
+     */
+    public boolean retryUnclaimed(JobRequestDto jobRequestDto, PushLane lane, int attempt, Throwable error) {
+        metrics.error(error);
+        if (!retryPublisher.retry(jobRequestDto, lane, attempt, error)) {
+            return false;
+        }
+        metrics.outcome(PushMetrics.Outcome.RETRIED);
+        return true;
+    }
+
+    /**
+     * If FCM said the token is dead, records it in the registry (and, when enabled, clears
+     * it in user-service) and fails the job for good. Returns false for any other error.
+     */
+    public boolean retireIfDeadToken(PushRequest fcmRequest, Throwable error) {
+        if (FcmSendException.kindOf(error) != FcmSendException.Kind.DEAD_TOKEN) {
+            return false;
+        }
+        logger.warn("Push token of user {} is no longer valid, retiring it", fcmRequest.getUserId());
+        metrics.error(error);
+        deadTokenRegistry.markDead(fcmRequest.getDeviceToken());
+        if (clearDeadTokensUpstream && fcmRequest.getUserId() != null) {
+            try {
+                userServiceClient.clearPushToken(fcmRequest.getUserId(), fcmRequest.getDeviceToken());
+            } catch (Exception e) {
+                logger.warn("Failed to clear dead push token of user {}: {}", fcmRequest.getUserId(), e.getMessage());
+            }
+        }
+        markFailed(fcmRequest.getNotificationId(), "Push token is no longer registered with FCM");
+        return true;
+    }
+
+    public void markDelivered(String notificationId) {
+        logger.info("Successfully processed notificationId: {}", notificationId);
+        reportStatus(notificationId, "delivered", null);
+        jobStatusStore.finish(notificationId, JobStatusStore.DELIVERED);
+        metrics.outcome(PushMetrics.Outcome.DELIVERED);
+    }
+
+    public void markFailed(String notificationId, String error) {
+        reportStatus(notificationId, "failed", error);
+        jobStatusStore.finish(notificationId, JobStatusStore.FAILED);
+        metrics.outcome(PushMetrics.Outcome.FAILED);
+    }
+
+    /**
+     * Batch form of markDelivered / markFailed: one gateway report per job, but a single
+     * pipelined Redis write for all of them. A null error means delivered.
+     */
+    public void markAll(Map<String, String> errorsById) {
+        Map<String, String> statusesById = new LinkedHashMap<>();
+        errorsById.forEach((notificationId, error) -> {
+            if (error == null) {
+                logger.info("Successfully processed notificationId: {}", notificationId);
+                reportStatus(notificationId, "delivered", null);
+                statusesById.put(notificationId, JobStatusStore.DELIVERED);
+            } else {
+                reportStatus(notificationId, "failed", error);
+                statusesById.put(notificationId, JobStatusStore.FAILED);
+            }
+        });
+        jobStatusStore.finishAll(statusesById);
+
+        long delivered = statusesById.values().stream().filter(JobStatusStore.DELIVERED::equals).count();
+        metrics.outcome(PushMetrics.Outcome.DELIVERED, (int) delivered);
+        metrics.outcome(PushMetrics.Outcome.FAILED, statusesById.size() - (int) delivered);
+    }
+
+    public UserResponseDto fetchUser(String userId) {
+        return metrics.time(PushMetrics.Stage.USER, () -> userProfileCache.get(userId));
+    }
+
+    public boolean isUserEligibleForPush(UserResponseDto user, String notificationId) {
+        if (user.getPreferences() == null || !user.getPreferences().getPush()) {
+            logger.warn("User {} has push notifications disabled. Skipping.", user.getId());
+            skip(notificationId, "User has push notifications disabled");
+            return false;
+        }
+
+        String pushToken = user.getPushToken();
+        if (pushToken == null || pushToken.isEmpty()) {
+            logger.warn("User {} has no push token. Skipping.", user.getId());
+            skip(notificationId, "No push token available");
+            return false;
+        }
+
+        // Profiles are usually cached, so a known-dead token costs neither a fetch nor a render
+        if (deadTokenRegistry.isDead(pushToken)) {
+            logger.warn("User {} only has a push token FCM already rejected. Skipping.", user.getId());
+            skip(notificationId, "Push token is no longer registered with FCM");
+            return false;
+        }
+
+        return true;
+    }
+
+    public RenderResponseDto renderTemplate(JobRequestDto jobRequestDto) {
+        return metrics.time(PushMetrics.Stage.RENDER, () -> templateStore.render(jobRequestDto));
+    }
+
+    public PushRequest buildPushRequest(UserResponseDto user, RenderResponseDto renderedData, JobRequestDto jobRequestDto) {
+        logger.debug("Sending push notification to token: {}", user.getPushToken());
+
+        PushRequest fcmRequest = new PushRequest();
+        fcmRequest.setDeviceToken(user.getPushToken());
+        fcmRequest.setUserId(user.getId());
+        fcmRequest.setTitle(renderedData.getRenderedSubject());
+        fcmRequest.setBody(renderedData.getRenderedBody());
+        fcmRequest.setNotificationId(jobRequestDto.getNotificationId());
+        fcmRequest.setImageUrl(renderedData.getRenderedImageUrl());
+        fcmRequest.setActionLink(renderedData.getRenderedActionLink());
+        fcmRequest.setCollapseKey(jobRequestDto.getCollapseKey());
+        fcmRequest.setCollapsedCount(jobRequestDto.getCollapsedCount());
+
+        return fcmRequest;
+    }
+
+    private void skip(String notificationId, String reason) {
+        reportStatus(notificationId, "failed", reason);
+        jobStatusStore.finish(notificationId, JobStatusStore.SKIPPED);
+        metrics.outcome(PushMetrics.Outcome.SKIPPED);
+    }
+
+    private void reportStatus(String notificationId, String status, String error) {
+        metrics.time(PushMetrics.Stage.REPORT, () -> statusReporter.report(notificationId, status, error));
+    }
+}
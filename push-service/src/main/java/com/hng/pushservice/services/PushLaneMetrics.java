@@ -0,0 +1,127 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.dto.JobRequestDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-lane backlog metrics:
+ * <ul>
+ *   <li>push.lane.lag: time from the gateway accepting a notification to a consumer picking
+ *       it up, first attempts of unscheduled jobs only (retries would add their own delay on top).</li>
+ *   <li>push.lane.depth: messages ready in the lane's queue, polled every depth-poll-interval
+ *       rather than on every scrape.</li>
+ * </ul>
+ */
+@Service
+public class PushLaneMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushLaneMetrics.class);
+
+    private final AmqpAdmin amqpAdmin;
+    private final Duration depthPollInterval;
+    private final Map<PushLane, Timer> lagTimers = new EnumMap<>(PushLane.class);
+    private final Map<PushLane, AtomicLong> depths = new EnumMap<>(PushLane.class);
+
+    private ScheduledExecutorService scheduler;
+
+    public PushLaneMetrics(AmqpAdmin amqpAdmin,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.push.lanes.depth-poll-interval:10s}") Duration depthPollInterval) {
+        this.amqpAdmin = amqpAdmin;
+        this.depthPollInterval = depthPollInterval;
+        for (PushLane lane : PushLane.values()) {
+            lagTimers.put(lane, Timer.builder("push.lane.lag")
+                    .description("Time from gateway acceptance to consumer pickup")
+                    .tag("lane", lane.tag())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            AtomicLong depth = new AtomicLong();
+            depths.put(lane, depth);
+            Gauge.builder("push.lane.depth", depth, AtomicLong::get)
+                    .description("Messages ready in the lane's queue")
+                    .tag("lane", lane.tag())
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "push-lane-depth");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::pollDepths, 0, depthPollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    public void received(PushLane lane, JobRequestDto jobRequestDto, int attempt) {
+        // Scheduled jobs wait on purpose; their lateness is push.scheduled.release.lag
+        if (attempt > 1 || jobRequestDto.getTimestamp() == null
+                || jobRequestDto.getSendAt() != null || jobRequestDto.getSpreadOver() != null) {
+            return;
+        }
+        Instant acceptedAt = parseTimestamp(jobRequestDto.getTimestamp());
+        if (acceptedAt != null) {
+            Duration lag = Duration.between(acceptedAt, Instant.now());
+            lagTimers.get(lane).record(lag.isNegative() ? Duration.ZERO : lag);
+        }
+    }
+
+    public long getDepth(PushLane lane) {
+        return depths.get(lane).get();
+    }
+
+    private void pollDepths() {
+        for (PushLane lane : PushLane.values()) {
+            try {
+                QueueInformation info = amqpAdmin.getQueueInfo(lane.getQueue());
+                if (info != null) {
+                    depths.get(lane).set(info.getMessageCount());
+                }
+            } catch (Exception e) {
+                logger.debug("Could not read depth of {}: {}", lane.getQueue(), e.getMessage());
+            }
+        }
+    }
+
+    static Instant parseTimestamp(String timestamp) {
+        try {
+            return Instant.parse(timestamp);
+        } catch (DateTimeParseException e) {
+            // The gateway sends naive UTC timestamps (datetime.utcnow().isoformat())
+            try {
+                return LocalDateTime.parse(timestamp).toInstant(ZoneOffset.UTC);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.hng.pushservice.services;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instruments for the push path, shared by every consumer mode:
+ * <ul>
+ *   <li>push.stage.duration{stage, scope}: time spent in each step, per job (scope=job) or
+ *       per bulk call in batch mode (scope=batch). Published as histograms, so percentiles
+ *       can be aggregated across instances.</li>
+ *   <li>push.jobs{outcome}: delivered, failed, skipped, duplicate and retried jobs.</li>
+ *   <li>push.errors{code}: failures by FCM error code, or by exception type otherwise.</li>
+ *   <li>push.consumer.in-flight: jobs taken off RabbitMQ and not yet settled.</li>
+ * </ul>
+ * Queue lag and depth per lane are published by {@link PushLaneMetrics}.
+ */
+@Service
+public class PushMetrics {
+
+    public enum Stage {
+        DEDUP,
+        USER,
+        RENDER,
+        SEND,
+        REPORT
+    }
+
+    public enum Outcome {
+        DELIVERED,
+        FAILED,
+        SKIPPED,
+        DUPLICATE,
+        RETRIED,
+        SUPERSEDED
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Stage, Timer> jobTimers = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> batchTimers = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Counter> outcomeCounters = new EnumMap<>(Outcome.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong settledJobs = new AtomicLong();
+    private final AtomicLong firstSettledAt = new AtomicLong();
+
+    public PushMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (Stage stage : Stage.values()) {
+            jobTimers.put(stage, stageTimer(stage, "job"));
+            batchTimers.put(stage, stageTimer(stage, "batch"));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            outcomeCounters.put(outcome, Counter.builder("push.jobs")
+                    .description("Push jobs by how they ended")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("push.consumer.in-flight", inFlight, AtomicInteger::get)
+                .description("Push jobs received and not yet acked or rejected")
+                .register(meterRegistry);
+    }
+
+    public <T> T time(Stage stage, Supplier<T> step) {
+        return jobTimers.get(stage).record(step);
+    }
+
+    public void time(Stage stage, Runnable step) {
+        jobTimers.get(stage).record(step);
+    }
+
+    public <T> T timeBatch(Stage stage, Supplier<T> step) {
+        return batchTimers.get(stage).record(step);
+    }
+
+    public void outcome(Outcome outcome) {
+        outcomeCounters.get(outcome).increment();
+    }
+
+    public void outcome(Outcome outcome, int count) {
+        outcomeCounters.get(outcome).increment(count);
+    }
+
+    public void error(Throwable error) {
+        meterRegistry.counter("push.errors", "code", errorCode(error)).increment();
+    }
+
+    public void received(int jobs) {
+        inFlight.addAndGet(jobs);
+    }
+
+    public void settled(int jobs) {
+        inFlight.addAndGet(-jobs);
+        settledJobs.addAndGet(jobs);
+        if (firstSettledAt.get() == 0) {
+            firstSettledAt.compareAndSet(0, System.currentTimeMillis());
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSettledJobs() {
+        return settledJobs.get();
+    }
+
+    /** Epoch millis of the first settled job, 0 until then. */
+    public long getFirstSettledAt() {
+        return firstSettledAt.get();
+    }
+
+    private Timer stageTimer(Stage stage, String scope) {
+        return Timer.builder("push.stage.duration")
+                .description("Time spent in one step of the push path")
+                .tag("stage", stage.name().toLowerCase())
+                .tag("scope", scope)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static String errorCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FirebaseMessagingException fcmError && fcmError.getMessagingErrorCode() != null) {
+                return fcmError.getMessagingErrorCode().name();
+            }
+        }
+        Throwable root = error;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,235 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.PipelineProperties;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.*;
+import com.rabbitmq.client.Channel;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pipelined consumption of push.queue. The listener thread only hands a job to the first
+ * stage; duplicate check, user fetch, render, FCM send and status report each run on their
+ * own stage, so many jobs are in flight per consumer. A job is acked once it leaves the
+ * report stage, either done or handed to the retry queues; if recording the outcome fails,
+ * it is dead-lettered rather than left unacked.
+ */
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.push.consumer.mode", havingValue = "pipeline")
+public class PushPipelineReceiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushPipelineReceiver.class);
+
+    private final FcmService fcmService;
+    private final PushJobProcessor jobProcessor;
+    private final PipelineProperties properties;
+    private final PushLaneMetrics laneMetrics;
+    private final PushMetrics metrics;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledDelivery scheduledDelivery;
+    private final CollapseBuffer collapseBuffer;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private PipelineStage dedupStage;
+    private PipelineStage userStage;
+    private PipelineStage renderStage;
+    private PipelineStage sendStage;
+    private PipelineStage reportStage;
+
+    @PostConstruct
+    public void startStages() {
+        dedupStage = stage("dedup", properties.getDedup());
+        userStage = stage("user", properties.getUser());
+        renderStage = stage("render", properties.getRender());
+        sendStage = stage("send", properties.getSend());
+        reportStage = stage("report", properties.getReport());
+    }
+
+    @PreDestroy
+    public void stopStages() {
+        // Upstream first, so every stage drains into one that is still running
+        dedupStage.shutdown();
+        userStage.shutdown();
+        renderStage.shutdown();
+        sendStage.shutdown();
+        reportStage.shutdown();
+    }
+
+    @RabbitListener(id = RabbitMQConfig.PUSH_LISTENER_ID, queues = RabbitMQConfig.PUSH_QUEUE, containerFactory = "pipelineRabbitListenerContainerFactory")
+    public void consumePushQueue(JobRequestDto jobRequestDto, Channel channel,
+                                 @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+                                 @Header(name = PushRetryPublisher.ATTEMPT_HEADER, required = false, defaultValue = "1") int attempt)
+            throws IOException {
+        logger.info("Received job for notificationId: {}", jobRequestDto.getNotificationId());
+        if (deferOrHold(jobRequestDto, attempt, channel, deliveryTag)) {
+            return;
+        }
+        laneMetrics.received(PushLane.NORMAL, jobRequestDto, attempt);
+        inFlight.incrementAndGet();
+        metrics.received(1);
+
+        PushJob job = new PushJob(jobRequestDto, attempt);
+
+        CompletableFuture<PushJob> deduped = dedupStage.supply(() -> {
+            job.skipped = !jobProcessor.claim(job.notificationId());
+            return job;
+        });
+
+        CompletableFuture<PushJob> withUser = userStage.then(deduped, j -> {
+            if (!j.skipped) {
+                j.user = jobProcessor.fetchUser(j.request.getUserId());
+                j.skipped = !jobProcessor.isUserEligibleForPush(j.user, j.notificationId());
+            }
+            return j;
+        });
+
+        CompletableFuture<PushJob> rendered = renderStage.then(withUser, j -> {
+            if (!j.skipped) {
+                RenderResponseDto renderedData = jobProcessor.renderTemplate(j.request);
+                j.fcmRequest = jobProcessor.buildPushRequest(j.user, renderedData, j.request);
+            }
+            return j;
+        });
+
+        CompletableFuture<PushJob> sent = sendStage.then(rendered, j -> {
+            if (!j.skipped) {
+                jobProcessor.extendLease(j.notificationId());
+                fcmService.sendPushNotification(j.fcmRequest);
+            }
+            return j;
+        });
+
+        reportStage.then(sent.handle((j, error) -> error), error -> {
+            settle(job, error, channel, deliveryTag);
+            return null;
+        });
+    }
+
+    /** Settles the delivery here when the job was parked for later or held for collapsing, or could not be. */
+    private boolean deferOrHold(JobRequestDto jobRequestDto, int attempt, Channel channel, long deliveryTag) throws IOException {
+        boolean deferred;
+        try {
+            deferred = scheduledDelivery.defer(jobRequestDto, PushLane.NORMAL, attempt)
+                    || collapseBuffer.hold(jobRequestDto, PushLane.NORMAL, attempt);
+        } catch (AmqpRejectAndDontRequeueException e) {
+            logger.error("Rejecting notificationId {}: {}", jobRequestDto.getNotificationId(), e.getMessage());
+            synchronized (channel) {
+                channel.basicNack(deliveryTag, false, false);
+            }
+            return true;
+        }
+        if (deferred) {
+            synchronized (channel) {
+                channel.basicAck(deliveryTag, false);
+            }
+        }
+        return deferred;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void settle(PushJob job, Throwable error, Channel channel, long deliveryTag) {
+        try {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (job.fcmRequest != null && jobProcessor.retireIfDeadToken(job.fcmRequest, cause)) {
+                    synchronized (channel) {
+                        channel.basicAck(deliveryTag, false);
+                    }
+                    return;
+                }
+                if (!PushRetryPublisher.isTransientRefusal(cause)) {
+                    logger.error("Failed to process notificationId {}: {}", job.notificationId(), cause.getMessage(), cause);
+                }
+                if (jobProcessor.retry(job.request, PushLane.NORMAL, job.attempt, cause)) {
+                    synchronized (channel) {
+                        channel.basicAck(deliveryTag, false);
+                    }
+                    return;
+                }
+                jobProcessor.markFailed(job.notificationId(), cause.getMessage());
+                synchronized (channel) {
+                    channel.basicNack(deliveryTag, false, false);
+                }
+                return;
+            }
+
+            if (!job.skipped) {
+                jobProcessor.markDelivered(job.notificationId());
+            }
+            synchronized (channel) {
+                channel.basicAck(deliveryTag, false);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to settle delivery for notificationId {}: {}", job.notificationId(), e.getMessage());
+        } catch (RuntimeException e) {
+            // Redis, the gateway or the retry publish failed mid-settle; an unsettled tag would hold
+            // its prefetch slot for good, so dead-letter the job to push.queue.dlq instead
+            logger.error("Failed to record the outcome of notificationId {}, dead-lettering it: {}",
+                    job.notificationId(), e.getMessage(), e);
+            try {
+                synchronized (channel) {
+                    channel.basicNack(deliveryTag, false, false);
+                }
+            } catch (IOException | RuntimeException nackError) {
+                logger.error("Failed to settle delivery for notificationId {}: {}", job.notificationId(), nackError.getMessage());
+            }
+        } finally {
+            inFlight.decrementAndGet();
+            metrics.settled(1);
+        }
+    }
+
+    private PipelineStage stage(String name, PipelineProperties.Stage stage) {
+        PipelineStage pipelineStage = new PipelineStage(name, stage.getConcurrency(), stage.getQueueCapacity());
+        Gauge.builder("push.pipeline.stage.active", pipelineStage, PipelineStage::getActiveCount)
+                .description("Jobs being worked on in the stage")
+                .tag("stage", name)
+                .register(meterRegistry);
+        Gauge.builder("push.pipeline.stage.queued", pipelineStage, PipelineStage::getQueuedCount)
+                .description("Jobs waiting for a thread of the stage")
+                .tag("stage", name)
+                .register(meterRegistry);
+        return pipelineStage;
+    }
+
+    /** Carries one job and what the earlier stages learned about it. */
+    private static class PushJob {
+
+        private final JobRequestDto request;
+        private final int attempt;
+        private UserResponseDto user;
+        private PushRequest fcmRequest;
+        private boolean skipped;
+
+        private PushJob(JobRequestDto request, int attempt) {
+            this.request = request;
+            this.attempt = attempt;
+        }
+
+        private String notificationId() {
+            return request.getNotificationId();
+        }
+    }
+}
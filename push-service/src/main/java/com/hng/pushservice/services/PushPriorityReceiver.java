@@ -0,0 +1,41 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.JobRequestDto;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Service;
+
+/**
+ * Consumes the high-priority lane in every consumer mode. Jobs are handled one at a time
+ * on dedicated consumers, never batched or queued behind bulk jobs in the pipeline stages,
+ * so their latency only depends on the downstream calls themselves. The share of capacity
+ * the lane gets is its concurrency relative to the normal lane's.
+ */
+@Service
+@RequiredArgsConstructor
+public class PushPriorityReceiver {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushPriorityReceiver.class);
+
+    private final PushJobProcessor jobProcessor;
+    private final PushLaneMetrics laneMetrics;
+    private final ScheduledDelivery scheduledDelivery;
+    private final CollapseBuffer collapseBuffer;
+
+    @RabbitListener(queues = RabbitMQConfig.PUSH_HIGH_QUEUE, concurrency = "${app.push.lanes.high.concurrency:4}")
+    public void consumeHighPriorityQueue(JobRequestDto jobRequestDto,
+                                         @Header(name = PushRetryPublisher.ATTEMPT_HEADER, required = false, defaultValue = "1") int attempt) {
+        logger.info("Received high-priority job for notificationId: {}", jobRequestDto.getNotificationId());
+        if (scheduledDelivery.defer(jobRequestDto, PushLane.HIGH, attempt)
+                || collapseBuffer.hold(jobRequestDto, PushLane.HIGH, attempt)) {
+            return;
+        }
+        laneMetrics.received(PushLane.HIGH, jobRequestDto, attempt);
+        jobProcessor.process(jobRequestDto, PushLane.HIGH, attempt);
+    }
+}
@@ -0,0 +1,130 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.config.RetryProperties;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.http.DownstreamUnavailableException;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sends failed jobs to the retry delay queues instead of backing off on the listener
+ * thread. The attempt number travels in the x-push-attempt header; the first delivery,
+ * which has no header, is attempt 1.
+ *
+ * Failures that say nothing about the job itself (the lease is held elsewhere, a
+ * downstream was refused locally by its breaker or bulkhead, or FCM is throttling) are parked in the first tier
+ * without using up an attempt, up to max-refusals times in a row (counted in the job's
+ * refused_count); after that a refusal costs an attempt like any other failure, so a job can
+ * not circle forever.
+ *
+ * A retry is only reported as published once the broker has confirmed it, so the caller
+ * never acks the original while its copy could still be lost.
+ *
+ * Retries go back to the lane the job came from, except that jobs at or above
+ * app.push.lanes.high-priority are promoted to the high lane.
+ */
+@Service
+@RequiredArgsConstructor
+public class PushRetryPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PushRetryPublisher.class);
+
+    public static final String ATTEMPT_HEADER = "x-push-attempt";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final RetryProperties retryProperties;
+
+    @Value("${app.push.lanes.high-priority:4}")
+    private int highPriority;
+
+    /**
+     * Returns true when the job was re-published for another attempt, false when it has
+     * run out of attempts or could not be re-published; the caller then fails it for good.
+     */
+    public boolean retry(JobRequestDto jobRequestDto, PushLane lane, int attempt, Throwable error) {
+        List<Duration> delays = retryProperties.getDelays();
+        if (delays.isEmpty()) {
+            return false;
+        }
+
+        FcmSendException.Kind fcmFailure = FcmSendException.kindOf(error);
+        if (fcmFailure == FcmSendException.Kind.REJECTED || fcmFailure == FcmSendException.Kind.DEAD_TOKEN) {
+            logger.warn("FCM rejected job {} for good, not retrying", jobRequestDto.getNotificationId());
+            return false;
+        }
+
+        int refusals = jobRequestDto.getRefusedCount() != null ? jobRequestDto.getRefusedCount() : 0;
+        int nextAttempt;
+        Duration delay;
+        if (isTransientRefusal(error) && refusals < retryProperties.getMaxRefusals()) {
+            nextAttempt = attempt;
+            delay = delays.get(0);
+            jobRequestDto.setRefusedCount(refusals + 1);
+        } else if (attempt < retryProperties.getMaxAttempts()) {
+            nextAttempt = attempt + 1;
+            delay = delays.get(Math.min(attempt, delays.size()) - 1);
+            jobRequestDto.setRefusedCount(null);
+        } else {
+            logger.warn("Job {} failed on its last attempt ({})", jobRequestDto.getNotificationId(), attempt);
+            return false;
+        }
+
+        Integer priority = jobRequestDto.getPriority();
+        PushLane retryLane = priority != null && priority >= highPriority ? PushLane.HIGH : lane;
+
+        try {
+            rabbitTemplate.invoke(operations -> {
+                operations.convertAndSend("", RabbitMQConfig.pushRetryQueue(retryLane, delay), jobRequestDto, message -> {
+                    message.getMessageProperties().setHeader(ATTEMPT_HEADER, nextAttempt);
+                    return message;
+                });
+                operations.waitForConfirmsOrDie(retryProperties.getConfirmTimeout().toMillis());
+                return null;
+            });
+            logger.info("Job {} will be retried on the {} lane in {} (attempt {})",
+                    jobRequestDto.getNotificationId(), retryLane.tag(), delay, nextAttempt);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to schedule retry for notificationId {}: {}",
+                    jobRequestDto.getNotificationId(), e.getMessage());
+            return false;
+        }
+    }
+
+    public static int attemptOf(Message message) {
+        Object attempt = message.getMessageProperties().getHeader(ATTEMPT_HEADER);
+        return attempt instanceof Number number ? number.intValue() : 1;
+    }
+
+    public static boolean isTransientRefusal(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JobInProgressException || cause instanceof DownstreamUnavailableException) {
+                return true;
+            }
+            if (cause instanceof FcmSendException fcmSendException
+                    && fcmSendException.getKind() == FcmSendException.Kind.THROTTLED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isInProgress(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof JobInProgressException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
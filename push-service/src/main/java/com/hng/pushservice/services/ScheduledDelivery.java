@@ -0,0 +1,331 @@
+package com.hng.pushservice.services;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hng.pushservice.config.PushLane;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.config.ScheduleProperties;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.http.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Holds push jobs with a send_at or spread_over until they are due, then puts them back on
+ * their lane, where they are processed like any other job.
+ *
+ * A job's due time is its send_at (or the gateway timestamp) plus a fixed offset within
+ * spread_over taken from its notification id, so a redelivered job keeps its slot. Deferred
+ * jobs are written to {@link ScheduledJobStore} with send_at set to that due time and
+ * spread_over cleared, which is also what makes the released copy go straight through.
+ *
+ * Three threads move them along: the loader leases jobs due within the horizon from Redis
+ * into a {@link TimingWheel}; the wheel hands over each job on its tick; the releaser
+ * publishes them at no more than release-rate per second, so a send_at shared by many jobs
+ * still reaches user-service, template-service and FCM as a steady stream.
+ *
+ * A lease is not extended, so the loader never holds more jobs than the releaser can publish
+ * in what is left of a lease after the horizon (see {@link #holdLimit}), and a job whose
+ * lease has run out anyway (a stalled broker, say) is dropped here rather than published,
+ * since another instance may have taken it by then.
+ */
+@Service
+public class ScheduledDelivery {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledDelivery.class);
+
+    private final ScheduledJobStore store;
+    private final RabbitTemplate rabbitTemplate;
+    private final PushRetryPublisher retryPublisher;
+    private final ObjectMapper objectMapper;
+    private final ScheduleProperties properties;
+    private final Counter deferredCounter;
+    private final Counter releasedCounter;
+    private final Timer releaseLag;
+    private final AtomicLong pending = new AtomicLong();
+    private final BlockingQueue<ScheduledJob> releaseQueue = new LinkedBlockingQueue<>();
+
+    private TimingWheel<ScheduledJob> wheel;
+    private ScheduledExecutorService loader;
+    private Thread releaser;
+
+    /** What is kept in push:scheduled:jobs. */
+    @Data
+    @NoArgsConstructor
+    static class ScheduledJob {
+
+        private JobRequestDto job;
+        private PushLane lane;
+        private int attempt;
+        private long dueAt;
+
+        // When this instance's lease on the job runs out; not stored
+        @JsonIgnore
+        private long leasedUntil;
+    }
+
+    public ScheduledDelivery(ScheduledJobStore store,
+                             RabbitTemplate rabbitTemplate,
+                             PushRetryPublisher retryPublisher,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             ScheduleProperties properties) {
+        this.store = store;
+        this.rabbitTemplate = rabbitTemplate;
+        this.retryPublisher = retryPublisher;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.deferredCounter = Counter.builder("push.scheduled.deferred")
+                .description("Jobs parked until their send_at or spread slot")
+                .register(meterRegistry);
+        this.releasedCounter = Counter.builder("push.scheduled.released")
+                .description("Scheduled jobs published back to their lane")
+                .register(meterRegistry);
+        this.releaseLag = Timer.builder("push.scheduled.release.lag")
+                .description("Time from a scheduled job's due time to its release")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("push.scheduled.pending", pending, AtomicLong::get)
+                .description("Scheduled jobs in Redis, across all instances")
+                .register(meterRegistry);
+        Gauge.builder("push.scheduled.held", this, ScheduledDelivery::held)
+                .description("Scheduled jobs this instance holds in its timing wheel or release queue")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        wheel = new TimingWheel<>("push-schedule-wheel", properties.getTick(), properties.getWheelSize(), releaseQueue::add);
+        wheel.start();
+
+        loader = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "push-schedule-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getPollInterval().toMillis();
+        loader.scheduleWithFixedDelay(this::load, 0, interval, TimeUnit.MILLISECONDS);
+
+        releaser = new Thread(this::releaseLoop, "push-schedule-releaser");
+        releaser.setDaemon(true);
+        releaser.start();
+    }
+
+    /** Hands everything not yet published back to Redis at its due time, so another instance can take it at once. */
+    @PreDestroy
+    public void stop() {
+        if (wheel == null) {
+            return;
+        }
+        loader.shutdownNow();
+        wheel.stop();
+        releaser.interrupt();
+        Map<String, Long> held = new LinkedHashMap<>();
+        wheel.drain().forEach(job -> held.put(job.getJob().getNotificationId(), job.getDueAt()));
+        releaseQueue.forEach(job -> held.put(job.getJob().getNotificationId(), job.getDueAt()));
+        releaseQueue.clear();
+        try {
+            store.giveBack(held);
+        } catch (Exception e) {
+            logger.warn("Could not hand {} scheduled jobs back; they return when their lease expires: {}", held.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Parks the job if it is not due yet. Returns true when the caller should just ack the
+     * message. If Redis cannot take the job, it is parked in the first retry tier instead.
+     */
+    public boolean defer(JobRequestDto jobRequestDto, PushLane lane, int attempt) {
+        if (!properties.isEnabled() || (jobRequestDto.getSendAt() == null && jobRequestDto.getSpreadOver() == null)) {
+            return false;
+        }
+        long dueAt;
+        try {
+            dueAt = dueAt(jobRequestDto);
+        } catch (DateTimeException | IllegalArgumentException e) {
+            logger.warn("Ignoring unreadable schedule of notificationId {}: {}", jobRequestDto.getNotificationId(), e.getMessage());
+            return false;
+        }
+        if (dueAt <= System.currentTimeMillis() + properties.getMinDelay().toMillis()) {
+            return false;
+        }
+
+        jobRequestDto.setSendAt(Instant.ofEpochMilli(dueAt).toString());
+        jobRequestDto.setTimeZone(null);
+        jobRequestDto.setSpreadOver(null);
+        ScheduledJob scheduled = new ScheduledJob();
+        scheduled.setJob(jobRequestDto);
+        scheduled.setLane(lane);
+        scheduled.setAttempt(attempt);
+        scheduled.setDueAt(dueAt);
+        try {
+            store.save(jobRequestDto.getNotificationId(), objectMapper.writeValueAsString(scheduled), dueAt);
+        } catch (Exception e) {
+            DownstreamUnavailableException refusal =
+                    new DownstreamUnavailableException("Could not store scheduled job: " + e.getMessage());
+            if (retryPublisher.retry(jobRequestDto, lane, attempt, refusal)) {
+                return true;
+            }
+            throw new AmqpRejectAndDontRequeueException("Could not schedule notificationId " + jobRequestDto.getNotificationId(), e);
+        }
+        deferredCounter.increment();
+        logger.info("Scheduled notificationId {} for {}", jobRequestDto.getNotificationId(), jobRequestDto.getSendAt());
+        return true;
+    }
+
+    static long dueAt(JobRequestDto jobRequestDto) {
+        Instant base = jobRequestDto.getSendAt() != null
+                ? parseSendAt(jobRequestDto.getSendAt(), jobRequestDto.getTimeZone())
+                : acceptedAt(jobRequestDto);
+        long dueAt = base.toEpochMilli();
+        if (jobRequestDto.getSpreadOver() != null) {
+            long spreadMillis = DurationStyle.detectAndParse(jobRequestDto.getSpreadOver()).toMillis();
+            if (spreadMillis > 0) {
+                // Fibonacci hashing spreads similar ids (campaign-1, campaign-2, ...) evenly over the window
+                long hash = (jobRequestDto.getNotificationId().hashCode() * 0x9E3779B97F4A7C15L) >>> 32;
+                dueAt += scale(hash, spreadMillis);
+            }
+        }
+        return dueAt;
+    }
+
+    /**
+     * hash * spreadMillis / 2^32 without overflow, for a 32-bit hash. The plain product
+     * overflows once spread_over passes about 24 days, so the spread is multiplied in two
+     * 32-bit halves; the low half's product fits 64 bits unsigned, hence the >>>.
+     */
+    static long scale(long hash, long spreadMillis) {
+        return hash * (spreadMillis >>> 32) + (hash * (spreadMillis & 0xFFFFFFFFL) >>> 32);
+    }
+
+    private static Instant parseSendAt(String sendAt, String timeZone) {
+        try {
+            return OffsetDateTime.parse(sendAt).toInstant();
+        } catch (DateTimeParseException e) {
+            ZoneId zone = timeZone != null ? ZoneId.of(timeZone) : ZoneOffset.UTC;
+            return LocalDateTime.parse(sendAt).atZone(zone).toInstant();
+        }
+    }
+
+    /** Without send_at the spread starts at acceptance, so every redelivery lands on the same slot. */
+    private static Instant acceptedAt(JobRequestDto jobRequestDto) {
+        Instant acceptedAt = jobRequestDto.getTimestamp() != null ? PushLaneMetrics.parseTimestamp(jobRequestDto.getTimestamp()) : null;
+        return acceptedAt != null ? acceptedAt : Instant.now();
+    }
+
+    private int held() {
+        return (wheel != null ? wheel.size() : 0) + releaseQueue.size();
+    }
+
+    /**
+     * The most jobs this instance may hold: a job taken now is due within the horizon and
+     * then waits behind at most this many others, which at release-rate leaves it published
+     * before its lease runs out.
+     */
+    int holdLimit() {
+        long publishWindow = properties.getLease().minus(properties.getHorizon()).toMillis();
+        long publishable = publishWindow * Math.max(1, properties.getReleaseRate()) / 1000;
+        return (int) Math.max(0, Math.min(properties.getMaxHeld(), publishable));
+    }
+
+    private void load() {
+        try {
+            pending.set(store.count());
+            int room = holdLimit() - held();
+            if (room <= 0) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long leasedUntil = now + properties.getLease().toMillis();
+            Map<String, String> payloads = store.take(now + properties.getHorizon().toMillis(),
+                    Math.min(properties.getPollBatch(), room), leasedUntil);
+            payloads.forEach((notificationId, payload) -> {
+                try {
+                    ScheduledJob job = objectMapper.readValue(payload, ScheduledJob.class);
+                    job.setLeasedUntil(leasedUntil);
+                    wheel.schedule(job, job.getDueAt());
+                } catch (Exception e) {
+                    logger.error("Dropping unreadable scheduled job {}: {}", notificationId, e.getMessage());
+                    store.remove(notificationId);
+                }
+            });
+            if (!payloads.isEmpty()) {
+                logger.debug("Loaded {} scheduled jobs into the timing wheel", payloads.size());
+            }
+        } catch (Exception e) {
+            logger.warn("Could not load scheduled jobs: {}", e.getMessage());
+        }
+    }
+
+    private void releaseLoop() {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, properties.getReleaseRate());
+        long nextRelease = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            ScheduledJob job;
+            try {
+                job = releaseQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Pace against a running schedule, so a quiet spell does not turn into a burst afterwards
+            nextRelease = Math.max(nextRelease + intervalNanos, System.nanoTime());
+            LockSupport.parkNanos(nextRelease - System.nanoTime());
+            release(job);
+        }
+    }
+
+    private void release(ScheduledJob scheduled) {
+        String notificationId = scheduled.getJob().getNotificationId();
+        if (System.currentTimeMillis() >= scheduled.getLeasedUntil()) {
+            // Visible in Redis again and maybe taken elsewhere; whoever holds it now publishes it
+            logger.warn("Lease on scheduled notificationId {} ran out before its release; leaving it to the next taker", notificationId);
+            return;
+        }
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.NOTIFICATIONS_DIRECT_EXCHANGE, scheduled.getLane().getRoutingKey(),
+                    scheduled.getJob(), message -> {
+                        message.getMessageProperties().setHeader(PushRetryPublisher.ATTEMPT_HEADER, scheduled.getAttempt());
+                        return message;
+                    });
+            store.remove(notificationId);
+            releasedCounter.increment();
+            releaseLag.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - scheduled.getDueAt())));
+        } catch (Exception e) {
+            // Still leased in Redis, so it comes back when the lease runs out
+            logger.error("Failed to release scheduled notificationId {}: {}", notificationId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.hng.pushservice.services;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable side of scheduled delivery: push:scheduled is a sorted set of notification ids
+ * scored by when an instance should next pick them up, and push:scheduled:jobs holds each
+ * job's payload.
+ *
+ * Taking jobs is one script call that also re-scores them to now + lease, so other
+ * instances leave them alone while they wait in this instance's timing wheel. A job is only
+ * removed once it has been published back to its lane; if the instance dies first, the
+ * job becomes visible again when the lease runs out and is picked up elsewhere.
+ */
+@Service
+public class ScheduledJobStore {
+
+    static final String SCHEDULE_KEY = "push:scheduled";
+    static final String JOBS_KEY = "push:scheduled:jobs";
+
+    // KEYS[1] schedule, KEYS[2] jobs; ARGV: up to (score), limit, leased score
+    private static final String TAKE_SCRIPT = """
+            local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            local result = {}
+            for _, id in ipairs(ids) do
+                local payload = redis.call('HGET', KEYS[2], id)
+                if payload then
+                    redis.call('ZADD', KEYS[1], ARGV[3], id)
+                    table.insert(result, id)
+                    table.insert(result, payload)
+                else
+                    redis.call('ZREM', KEYS[1], id)
+                end
+            end
+            return result
+            """;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE = new DefaultRedisScript<>(TAKE_SCRIPT, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public ScheduledJobStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /** Payload first, so the sorted set never points at a job that is not there. */
+    public void save(String notificationId, String payload, long dueMillis) {
+        redisTemplate.opsForHash().put(JOBS_KEY, notificationId, payload);
+        redisTemplate.opsForZSet().add(SCHEDULE_KEY, notificationId, dueMillis);
+    }
+
+    /**
+     * Leases up to limit jobs due by untilMillis until leasedUntilMillis and returns their
+     * payloads by notification id.
+     */
+    public Map<String, String> take(long untilMillis, int limit, long leasedUntilMillis) {
+        List<?> result = redisTemplate.execute(TAKE, List.of(SCHEDULE_KEY, JOBS_KEY),
+                String.valueOf(untilMillis), String.valueOf(limit), String.valueOf(leasedUntilMillis));
+        Map<String, String> payloads = new LinkedHashMap<>();
+        if (result != null) {
+            for (int i = 0; i + 1 < result.size(); i += 2) {
+                payloads.put((String) result.get(i), (String) result.get(i + 1));
+            }
+        }
+        return payloads;
+    }
+
+    /** Makes leased jobs visible again at the given time, e.g. on shutdown. */
+    public void giveBack(Map<String, Long> dueMillisById) {
+        dueMillisById.forEach((notificationId, dueMillis) ->
+                redisTemplate.opsForZSet().add(SCHEDULE_KEY, notificationId, dueMillis));
+    }
+
+    public void remove(String notificationId) {
+        redisTemplate.opsForZSet().remove(SCHEDULE_KEY, notificationId);
+        redisTemplate.opsForHash().delete(JOBS_KEY, notificationId);
+    }
+
+    public long count() {
+        Long count = redisTemplate.opsForZSet().zCard(SCHEDULE_KEY);
+        return count != null ? count : 0;
+    }
+}
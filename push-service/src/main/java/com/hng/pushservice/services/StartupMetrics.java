@@ -0,0 +1,143 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.StartupProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long this instance took to get going, all measured from JVM start:
+ * <ul>
+ *   <li>push.startup.ready: until the application was ready (listeners started).</li>
+ *   <li>push.startup.warm-up: how long the warm-up itself took.</li>
+ *   <li>push.startup.first-message: until the first job was settled.</li>
+ *   <li>push.startup.steady-state: until the mean time per job (all push.stage.duration time
+ *       over settled jobs, per interval) stopped moving by more than tolerance for intervals
+ *       in a row; the start of that run is what is reported.</li>
+ * </ul>
+ * Each gauge reads NaN until its moment has come. Both message times are also logged once.
+ */
+@Service
+public class StartupMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final PushMetrics metrics;
+    private final MeterRegistry meterRegistry;
+    private final StartupProperties.SteadyState properties;
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final AtomicLong readyAt = new AtomicLong();
+    private final AtomicLong warmUpMillis = new AtomicLong(-1);
+    private final AtomicLong firstMessageAt = new AtomicLong();
+    private final AtomicLong steadyAt = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+    private long lastJobs;
+    private double lastNanos;
+    private double lastMeanNanos;
+    private long stableSince;
+    private int stableIntervals;
+
+    public StartupMetrics(PushMetrics metrics, MeterRegistry meterRegistry, StartupProperties properties) {
+        this.metrics = metrics;
+        this.meterRegistry = meterRegistry;
+        this.properties = properties.getSteadyState();
+
+        sinceStart("push.startup.ready", "Time from JVM start until the application was ready", readyAt);
+        sinceStart("push.startup.first-message", "Time from JVM start until the first job was settled", firstMessageAt);
+        sinceStart("push.startup.steady-state", "Time from JVM start until the time per job settled", steadyAt);
+        TimeGauge.builder("push.startup.warm-up", warmUpMillis, TimeUnit.MILLISECONDS,
+                        millis -> millis.get() < 0 ? Double.NaN : millis.get())
+                .description("Time spent warming up before the listeners started")
+                .register(meterRegistry);
+    }
+
+    public void warmedUp(long millis) {
+        warmUpMillis.set(millis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyAt.set(System.currentTimeMillis());
+        logger.info("Ready {} ms after JVM start", readyAt.get() - jvmStartMillis);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "push-startup-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void check() {
+        try {
+            long firstSettled = metrics.getFirstSettledAt();
+            if (firstSettled != 0 && firstMessageAt.get() == 0) {
+                firstMessageAt.set(firstSettled);
+                logger.info("First job settled {} ms after JVM start", firstSettled - jvmStartMillis);
+            }
+
+            long jobs = metrics.getSettledJobs();
+            double nanos = stageNanos();
+            long intervalJobs = jobs - lastJobs;
+            if (intervalJobs < properties.getMinJobs()) {
+                return;
+            }
+            double meanNanos = (nanos - lastNanos) / intervalJobs;
+            lastJobs = jobs;
+            lastNanos = nanos;
+
+            if (lastMeanNanos > 0 && Math.abs(meanNanos - lastMeanNanos) <= properties.getTolerance() * lastMeanNanos) {
+                stableIntervals++;
+            } else {
+                stableIntervals = 0;
+                stableSince = System.currentTimeMillis();
+            }
+            lastMeanNanos = meanNanos;
+
+            if (stableIntervals >= properties.getIntervals()) {
+                steadyAt.set(stableSince);
+                logger.info("Steady state {} ms after JVM start, at {} ms of stage time per job",
+                        stableSince - jvmStartMillis, String.format("%.2f", meanNanos / 1_000_000));
+                scheduler.shutdown();
+            }
+        } catch (Exception e) {
+            logger.warn("Startup metrics check failed: {}", e.getMessage());
+        }
+    }
+
+    private double stageNanos() {
+        double nanos = 0;
+        for (Timer timer : meterRegistry.find("push.stage.duration").timers()) {
+            nanos += timer.totalTime(TimeUnit.NANOSECONDS);
+        }
+        return nanos;
+    }
+
+    private void sinceStart(String name, String description, AtomicLong at) {
+        TimeGauge.builder(name, at, TimeUnit.MILLISECONDS, millis -> millis.get() == 0 ? Double.NaN : millis.get() - jvmStartMillis)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,191 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.config.StartupProperties;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.dto.PushRequest;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.UserResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Gets the service ready for its first jobs before any listener container starts: this
+ * lifecycle runs in an earlier phase than the containers (and the web server), and they
+ * are only started once it returns.
+ *
+ * It opens the Redis and RabbitMQ connections, calls each downstream's /health from
+ * connections threads at once so their pools hold that many connections, optionally
+ * renders a real template and has FCM validate a message, and runs the in-process part of
+ * a job (message conversion, push request and FCM message building) iterations
+ * times so the JIT has compiled it. A step that fails is logged and skipped; the whole
+ * warm-up gives up after timeout, so a missing dependency only delays startup that long.
+ */
+@Service
+@ConditionalOnProperty(name = "app.push.startup.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+public class StartupWarmup implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final ParameterizedTypeReference<JobRequestDto> JOB_TYPE = new ParameterizedTypeReference<>() {};
+
+    private final StringRedisTemplate redisTemplate;
+    private final ConnectionFactory connectionFactory;
+    private final UserServiceClient userServiceClient;
+    private final TemplateServiceClient templateServiceClient;
+    private final PushJobProcessor jobProcessor;
+    private final FcmService fcmService;
+    private final Jackson2JsonMessageConverter messageConverter;
+    private final StartupMetrics startupMetrics;
+    private final StartupProperties.WarmUp properties;
+
+    private volatile boolean running;
+    private long deadline;
+
+    public StartupWarmup(StringRedisTemplate redisTemplate,
+                         ConnectionFactory connectionFactory,
+                         UserServiceClient userServiceClient,
+                         TemplateServiceClient templateServiceClient,
+                         PushJobProcessor jobProcessor,
+                         FcmService fcmService,
+                         Jackson2JsonMessageConverter messageConverter,
+                         StartupMetrics startupMetrics,
+                         StartupProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.userServiceClient = userServiceClient;
+        this.templateServiceClient = templateServiceClient;
+        this.jobProcessor = jobProcessor;
+        this.fcmService = fcmService;
+        this.messageConverter = messageConverter;
+        this.startupMetrics = startupMetrics;
+        this.properties = properties.getWarmUp();
+    }
+
+    /** Before the web server (DEFAULT_PHASE - 1024) and the listener containers (DEFAULT_PHASE). */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void start() {
+        long startedAt = System.currentTimeMillis();
+        deadline = startedAt + properties.getTimeout().toMillis();
+        logger.info("Warming up before the listeners start");
+
+        step("redis", () -> redisTemplate.execute((RedisCallback<String>) RedisConnection::ping));
+        step("rabbitmq", connectionFactory::createConnection);
+        step("user-service", () -> concurrently(userServiceClient::ping));
+        step("template-service", () -> concurrently(templateServiceClient::ping));
+        if (properties.getTemplateCode() != null && !properties.getTemplateCode().isBlank()) {
+            step("render", () -> {
+                for (int i = 0; i < properties.getRenders(); i++) {
+                    templateServiceClient.renderTemplate(sampleJob(i));
+                }
+            });
+        }
+        if (properties.isFcmDryRun()) {
+            step("fcm", () -> fcmService.validate(samplePush(), "warm-up"));
+        }
+        step("jobs", this::exerciseJobPath);
+
+        long took = System.currentTimeMillis() - startedAt;
+        startupMetrics.warmedUp(took);
+        logger.info("Warm-up finished in {} ms", took);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void step(String name, WarmUpStep step) {
+        if (System.currentTimeMillis() > deadline) {
+            logger.warn("Warm-up timed out; skipping {}", name);
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            step.run();
+            logger.info("Warm-up {} took {} ms", name, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            logger.warn("Warm-up {} failed after {} ms: {}", name, System.currentTimeMillis() - startedAt, e.getMessage());
+        }
+    }
+
+    private void concurrently(Runnable call) {
+        int connections = Math.max(1, properties.getConnections());
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            List<CompletableFuture<Void>> calls = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                calls.add(CompletableFuture.runAsync(call, executor));
+            }
+            CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void exerciseJobPath() {
+        UserResponseDto user = new UserResponseDto();
+        user.setId("warm-up");
+        user.setPushToken("warm-up-token");
+        RenderResponseDto rendered = new RenderResponseDto("Warm-up", "Warming up the push path",
+                null, "https://example.com/warm-up");
+
+        for (int i = 0; i < properties.getIterations(); i++) {
+            Message message = messageConverter.toMessage(sampleJob(i), new MessageProperties());
+            JobRequestDto job = (JobRequestDto) messageConverter.fromMessage(message, JOB_TYPE);
+            fcmService.buildMessage(jobProcessor.buildPushRequest(user, rendered, job));
+        }
+    }
+
+    private JobRequestDto sampleJob(int i) {
+        JobRequestDto job = new JobRequestDto();
+        job.setNotificationId("warm-up-" + i);
+        job.setUserId("warm-up");
+        job.setTemplateCode(properties.getTemplateCode());
+        job.setVariables(Map.of("name", "warm-up"));
+        job.setTimestamp(Instant.now().toString());
+        return job;
+    }
+
+    private static PushRequest samplePush() {
+        PushRequest request = new PushRequest();
+        request.setTitle("Warm-up");
+        request.setBody("Validated only, never delivered");
+        return request;
+    }
+
+    @FunctionalInterface
+    private interface WarmUpStep {
+
+        void run() throws Exception;
+    }
+}
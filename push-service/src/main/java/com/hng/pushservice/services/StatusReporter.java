@@ -0,0 +1,373 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.dto.StatusUpdateDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reports delivery outcomes to the gateway off the listener threads.
+ *
+ * Updates are buffered in memory and flushed by a background thread once batch-size of them
+ * are waiting or flush-interval has passed, whichever comes first; each flush posts its
+ * updates in parallel. Updates the gateway could not take (connection errors, 5xx) are
+ * appended to the Redis stream push:status-outbox instead of being lost, and replayed
+ * every replay-interval. While the gateway is failing, flushes go straight to the outbox.
+ *
+ * The outbox is shared by all replicas and read through the consumer group
+ * push-status-replay, so each update is replayed by one replica at a time. An update is
+ * acked and deleted once the gateway took it; until then it stays pending with the replica
+ * that read it, which tries it again first thing next round. Updates left pending by a
+ * replica that stopped are claimed by another once idle for claim-after. The stream is
+ * capped at about outbox-max-length entries; past that the oldest updates are dropped.
+ */
+@Service
+public class StatusReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusReporter.class);
+
+    static final String OUTBOX_STREAM = "push:status-outbox";
+    static final String OUTBOX_GROUP = "push-status-replay";
+
+    @Value("${app.status-update.url:http://localhost:8000/api/v1/push/status/}")
+    private String statusUpdateUrl;
+
+    @Value("${app.push.status-report.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.push.status-report.flush-interval:500ms}")
+    private Duration flushInterval;
+
+    @Value("${app.push.status-report.flush-threads:8}")
+    private int flushThreads;
+
+    @Value("${app.push.status-report.replay-interval:30s}")
+    private Duration replayInterval;
+
+    @Value("${app.push.status-report.claim-after:2m}")
+    private Duration claimAfter;
+
+    @Value("${app.push.status-report.outbox-max-length:100000}")
+    private long outboxMaxLength;
+
+    private final RestTemplate restTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final BlockingQueue<StatusUpdateDto> buffer;
+    private final Consumer outboxConsumer = Consumer.from(OUTBOX_GROUP, "push-" + UUID.randomUUID());
+
+    private ExecutorService postExecutor;
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    private volatile long gatewayDownUntil;
+
+    public StatusReporter(@Qualifier("gatewayRestTemplate") RestTemplate restTemplate,
+                          StringRedisTemplate redisTemplate,
+                          @Value("${app.push.status-report.buffer-size:10000}") int bufferSize) {
+        this.restTemplate = restTemplate;
+        this.redisTemplate = redisTemplate;
+        this.buffer = new LinkedBlockingQueue<>(bufferSize);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        postExecutor = Executors.newFixedThreadPool(flushThreads, daemon("push-status-post"));
+        scheduler = Executors.newScheduledThreadPool(2, daemon("push-status-flush"));
+        scheduler.execute(this::flushLoop);
+        scheduler.scheduleWithFixedDelay(this::replayOutbox,
+                replayInterval.toMillis(), replayInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<StatusUpdateDto> remaining = new ArrayList<>();
+        buffer.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.info("Flushing {} buffered status updates before shutdown", remaining.size());
+            flush(remaining);
+        }
+        postExecutor.shutdown();
+        leaveOutboxGroup();
+    }
+
+    public void report(String notificationId, String status, String error) {
+        StatusUpdateDto statusUpdate = new StatusUpdateDto();
+        statusUpdate.setNotificationId(notificationId);
+        statusUpdate.setStatus(status);
+        statusUpdate.setError(error);
+
+        if (!buffer.offer(statusUpdate)) {
+            logger.warn("Status buffer full, writing update for {} to the outbox", notificationId);
+            spill(List.of(statusUpdate));
+        }
+    }
+
+    public int getBuffered() {
+        return buffer.size();
+    }
+
+    private void flushLoop() {
+        List<StatusUpdateDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + flushInterval.toNanos();
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    StatusUpdateDto next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                spill(batch);
+                return;
+            } catch (Exception e) {
+                logger.error("Status flush failed: {}", e.getMessage(), e);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<StatusUpdateDto> batch) {
+        if (System.currentTimeMillis() < gatewayDownUntil) {
+            spill(batch);
+            return;
+        }
+
+        boolean[] accepted = postAll(batch);
+        List<StatusUpdateDto> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (!accepted[i]) {
+                failed.add(batch.get(i));
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            logger.error("Gateway did not accept {} of {} status updates, moving them to the outbox",
+                    failed.size(), batch.size());
+            gatewayDownUntil = System.currentTimeMillis() + replayInterval.toMillis();
+            spill(failed);
+        }
+    }
+
+    private boolean[] postAll(List<StatusUpdateDto> batch) {
+        List<Future<Boolean>> results = new ArrayList<>(batch.size());
+        for (StatusUpdateDto statusUpdate : batch) {
+            results.add(postExecutor.submit(() -> post(statusUpdate)));
+        }
+
+        boolean[] accepted = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                accepted[i] = results.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                accepted[i] = false;
+            }
+        }
+        return accepted;
+    }
+
+    /** Returns false only when the update should be retried later. */
+    private boolean post(StatusUpdateDto statusUpdate) {
+        try {
+            logger.debug("Reporting status to Gateway: {}", statusUpdate);
+            restTemplate.postForObject(statusUpdateUrl, statusUpdate, Object.class);
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            logger.warn("Notification {} not found in gateway (OK for direct RabbitMQ testing)",
+                    statusUpdate.getNotificationId());
+            return true;
+        } catch (HttpClientErrorException e) {
+            logger.error("Gateway rejected status for notificationId {}: {}",
+                    statusUpdate.getNotificationId(), e.getMessage());
+            return true;
+        } catch (Exception e) {
+            logger.warn("Failed to report status for notificationId {}: {}",
+                    statusUpdate.getNotificationId(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void spill(List<StatusUpdateDto> statusUpdates) {
+        for (StatusUpdateDto statusUpdate : statusUpdates) {
+            try {
+                Map<String, String> fields = new HashMap<>();
+                fields.put("notification_id", statusUpdate.getNotificationId());
+                fields.put("status", statusUpdate.getStatus());
+                if (statusUpdate.getError() != null) {
+                    fields.put("error", statusUpdate.getError());
+                }
+                redisTemplate.opsForStream().add(StreamRecords.newRecord().in(OUTBOX_STREAM).ofMap(fields),
+                        XAddOptions.maxlen(outboxMaxLength).approximateTrimming(true));
+            } catch (Exception e) {
+                logger.error("CRITICAL: Failed to report status for notificationId {}: {}",
+                        statusUpdate.getNotificationId(), e.getMessage());
+            }
+        }
+    }
+
+    private void replayOutbox() {
+        try {
+            createOutboxGroup();
+            boolean drained = false;
+            while (running && !drained) {
+                List<MapRecord<String, Object, Object>> records = nextOutboxRecords();
+                if (records.isEmpty()) {
+                    return;
+                }
+
+                logger.info("Replaying {} status updates from the outbox", records.size());
+                List<StatusUpdateDto> batch = new ArrayList<>(records.size());
+                for (MapRecord<String, Object, Object> record : records) {
+                    Map<Object, Object> fields = record.getValue();
+                    StatusUpdateDto statusUpdate = new StatusUpdateDto();
+                    statusUpdate.setNotificationId((String) fields.get("notification_id"));
+                    statusUpdate.setStatus((String) fields.get("status"));
+                    statusUpdate.setError((String) fields.get("error"));
+                    batch.add(statusUpdate);
+                }
+
+                boolean[] accepted = postAll(batch);
+                List<RecordId> replayed = new ArrayList<>(records.size());
+                for (int i = 0; i < records.size(); i++) {
+                    if (accepted[i]) {
+                        replayed.add(records.get(i).getId());
+                    }
+                }
+                if (!replayed.isEmpty()) {
+                    RecordId[] ids = replayed.toArray(new RecordId[0]);
+                    redisTemplate.opsForStream().acknowledge(OUTBOX_STREAM, OUTBOX_GROUP, ids);
+                    redisTemplate.opsForStream().delete(OUTBOX_STREAM, ids);
+                }
+
+                if (replayed.size() < records.size()) {
+                    // Gateway still unhealthy; the rest stay pending with us for the next round
+                    gatewayDownUntil = System.currentTimeMillis() + replayInterval.toMillis();
+                    return;
+                }
+                gatewayDownUntil = 0;
+                drained = records.size() < batchSize;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to replay status outbox: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Updates this replica read before but could not deliver, then those another replica has
+     * left idle for claim-after, then new ones.
+     */
+    private List<MapRecord<String, Object, Object>> nextOutboxRecords() {
+        StreamReadOptions options = StreamReadOptions.empty().count(batchSize);
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .read(outboxConsumer, options, StreamOffset.create(OUTBOX_STREAM, ReadOffset.from("0")));
+        if (records != null && !records.isEmpty()) {
+            return records;
+        }
+
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage pending : redisTemplate.opsForStream()
+                .pending(OUTBOX_STREAM, OUTBOX_GROUP, Range.unbounded(), batchSize)) {
+            if (!pending.getConsumerName().equals(outboxConsumer.getName())
+                    && pending.getElapsedTimeSinceLastDelivery().compareTo(claimAfter) >= 0) {
+                stale.add(pending.getId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            // XCLAIM re-checks the idle time, so two replicas can not both take an update
+            records = redisTemplate.opsForStream().claim(OUTBOX_STREAM, OUTBOX_GROUP, outboxConsumer.getName(),
+                    claimAfter, stale.toArray(new RecordId[0]));
+            if (records != null && !records.isEmpty()) {
+                logger.info("Took over {} status updates left pending by other replicas", records.size());
+                return records;
+            }
+        }
+
+        records = redisTemplate.opsForStream()
+                .read(outboxConsumer, options, StreamOffset.create(OUTBOX_STREAM, ReadOffset.lastConsumed()));
+        return records != null ? records : List.of();
+    }
+
+    /** Creates the stream and its group if they are not there yet; a no-op afterwards. */
+    private void createOutboxGroup() {
+        byte[] stream = OUTBOX_STREAM.getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(stream, OUTBOX_GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && !(e.getCause() != null && String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                throw e;
+            }
+        }
+    }
+
+    /** Drops this replica's consumer from the group, unless updates are still pending with it. */
+    private void leaveOutboxGroup() {
+        try {
+            if (redisTemplate.opsForStream().pending(OUTBOX_STREAM, outboxConsumer, Range.unbounded(), 1).isEmpty()) {
+                redisTemplate.opsForStream().deleteConsumer(OUTBOX_STREAM, outboxConsumer);
+            }
+        } catch (Exception e) {
+            logger.debug("Could not leave the status outbox group: {}", e.getMessage());
+        }
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
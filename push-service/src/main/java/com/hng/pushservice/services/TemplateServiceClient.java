@@ -0,0 +1,94 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.dto.ApiResponseDto;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.dto.RenderRequestDto;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.TemplateDefinitionDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+@Service
+public class TemplateServiceClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateServiceClient.class);
+
+    @Value("${app.template-service.url:http://localhost:8085/api/v1/templates/render}")
+    private String templateServiceUrl;
+
+    private final RestTemplate restTemplate;
+
+    public TemplateServiceClient(@Qualifier("templateServiceRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /** Calls template-service's /health, which leaves a pooled connection open; used by the startup warm-up. */
+    public void ping() {
+        restTemplate.getForEntity(UriComponentsBuilder.fromUriString(templateServiceUrl)
+                .replacePath("/health").replaceQuery(null).build().toUri(), String.class);
+    }
+
+    /**
+     * Fetches a template's compiled form. With the ETag of a copy already held, a 304 (empty
+     * body) means that copy is current. Returns null when template-service has no such template.
+     */
+    public ResponseEntity<TemplateDefinitionDto> fetchDefinition(String templateCode, String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        if (eTag != null) {
+            headers.setIfNoneMatch(eTag);
+        }
+        try {
+            return restTemplate.exchange(UriComponentsBuilder.fromUriString(templateServiceUrl)
+                            .replacePath("/api/v1/templates/{templateCode}/compiled").replaceQuery(null)
+                            .buildAndExpand(templateCode).encode().toUri(),
+                    HttpMethod.GET, new HttpEntity<>(headers), TemplateDefinitionDto.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        }
+    }
+
+    public RenderResponseDto renderTemplate(JobRequestDto jobRequestDto) {
+        logger.debug("Rendering template: {}", jobRequestDto.getTemplateCode());
+
+        RenderRequestDto renderRequest = new RenderRequestDto();
+        renderRequest.setTemplateKey(jobRequestDto.getTemplateCode());
+        renderRequest.setNotificationType("push");
+        renderRequest.setVariables(jobRequestDto.getVariables());
+
+        HttpEntity<RenderRequestDto> requestEntity = new HttpEntity<>(renderRequest);
+        ParameterizedTypeReference<ApiResponseDto<RenderResponseDto>> responseType =
+                new ParameterizedTypeReference<ApiResponseDto<RenderResponseDto>>() {};
+
+        ResponseEntity<ApiResponseDto<RenderResponseDto>> responseEntity = restTemplate.exchange(
+                templateServiceUrl,
+                HttpMethod.POST,
+                requestEntity,
+                responseType
+        );
+
+        ApiResponseDto<RenderResponseDto> templateResponse = responseEntity.getBody();
+
+        if (templateResponse == null || !templateResponse.isSuccess()) {
+            throw new RuntimeException("Failed to render template: " +
+                    (templateResponse != null ? templateResponse.getError() : "null response"));
+        }
+
+        RenderResponseDto renderedData = templateResponse.getData();
+        if (renderedData == null) {
+            throw new RuntimeException("Rendered data came back empty.");
+        }
+
+        return renderedData;
+    }
+}
@@ -0,0 +1,175 @@
+package com.hng.pushservice.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hng.pushservice.config.TemplateSyncProperties;
+import com.hng.pushservice.dto.JobRequestDto;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.TemplateDefinitionDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders jobs in-process from local copies of their templates, and only calls
+ * template-service's /render for a template it does not have yet, or when a variable is
+ * missing (what to do then is template-service's call).
+ *
+ * Copies are fetched in compiled form with their ETag in the background: the first job for
+ * a template is rendered remotely while its copy is fetched, and a copy older than
+ * revalidate-after is checked with If-None-Match, also in the background, while it is still
+ * used. A 304 keeps it; a new definition replaces it; a 404 drops it. Each template has at
+ * most one fetch in flight.
+ *
+ * Published as the "push.templates" cache metrics, push.template.render (source=local or
+ * remote) and push.template.sync (result).
+ */
+@Service
+public class TemplateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateStore.class);
+
+    enum SyncResult {
+        FETCHED,
+        NOT_MODIFIED,
+        NOT_FOUND,
+        FAILED
+    }
+
+    private final TemplateServiceClient templateServiceClient;
+    private final TemplateSyncProperties properties;
+    private final Cache<String, LocalTemplate> templates;
+    private final Set<String> syncing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService syncExecutor;
+
+    private final Counter renderedLocally;
+    private final Counter renderedRemotely;
+    private final Map<SyncResult, Counter> syncCounters = new EnumMap<>(SyncResult.class);
+
+    public TemplateStore(TemplateServiceClient templateServiceClient, MeterRegistry meterRegistry,
+                         TemplateSyncProperties properties) {
+        this.templateServiceClient = templateServiceClient;
+        this.properties = properties;
+        this.templates = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(properties.getMaxTemplates())
+                .recordStats()
+                .<String, LocalTemplate>build(), "push.templates");
+        AtomicInteger threads = new AtomicInteger();
+        this.syncExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getSyncThreads()), task -> {
+            Thread thread = new Thread(task, "push-template-sync-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.renderedLocally = renderCounter(meterRegistry, "local");
+        this.renderedRemotely = renderCounter(meterRegistry, "remote");
+        for (SyncResult result : SyncResult.values()) {
+            syncCounters.put(result, Counter.builder("push.template.sync")
+                    .description("Template fetches and checks against template-service")
+                    .tag("result", result.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        syncExecutor.shutdownNow();
+    }
+
+    public RenderResponseDto render(JobRequestDto job) {
+        String templateCode = job.getTemplateCode();
+        LocalTemplate template = properties.isEnabled() && templateCode != null
+                ? templates.getIfPresent(templateCode) : null;
+
+        if (template != null) {
+            if (System.currentTimeMillis() - template.getCheckedAt() > properties.getRevalidateAfter().toMillis()) {
+                sync(templateCode, template);
+            }
+            RenderResponseDto rendered = template.render(job.getVariables());
+            if (rendered != null) {
+                renderedLocally.increment();
+                return rendered;
+            }
+        } else if (properties.isEnabled() && templateCode != null) {
+            sync(templateCode, null);
+        }
+
+        renderedRemotely.increment();
+        return templateServiceClient.renderTemplate(job);
+    }
+
+    public void invalidate(String templateCode) {
+        templates.invalidate(templateCode);
+    }
+
+    public void invalidateAll() {
+        templates.invalidateAll();
+    }
+
+    /** Fetches the template, or checks the copy held, unless that is already under way. */
+    private void sync(String templateCode, LocalTemplate held) {
+        if (!syncing.add(templateCode)) {
+            return;
+        }
+        try {
+            syncExecutor.execute(() -> {
+                try {
+                    syncCounters.get(fetch(templateCode, held)).increment();
+                } catch (RuntimeException e) {
+                    syncCounters.get(SyncResult.FAILED).increment();
+                    logger.warn("Could not sync template {}: {}", templateCode, e.getMessage());
+                } finally {
+                    syncing.remove(templateCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            syncing.remove(templateCode);
+        }
+    }
+
+    private SyncResult fetch(String templateCode, LocalTemplate held) {
+        long now = System.currentTimeMillis();
+        ResponseEntity<TemplateDefinitionDto> response =
+                templateServiceClient.fetchDefinition(templateCode, held != null ? held.getETag() : null);
+        if (response == null) {
+            templates.invalidate(templateCode);
+            return SyncResult.NOT_FOUND;
+        }
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && held != null) {
+            held.checked(now);
+            return SyncResult.NOT_MODIFIED;
+        }
+        TemplateDefinitionDto definition = response.getBody();
+        if (definition == null) {
+            throw new IllegalStateException("empty definition with status " + response.getStatusCode());
+        }
+        LocalTemplate fetched = new LocalTemplate(definition, response.getHeaders().getETag(), now);
+        templates.put(templateCode, fetched);
+        if (held != null) {
+            logger.info("Template {} changed from version {} to {}", templateCode, held.getVersion(), fetched.getVersion());
+        }
+        return SyncResult.FETCHED;
+    }
+
+    private static Counter renderCounter(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("push.template.render")
+                .description("Jobs rendered in-process (local) or by template-service (remote)")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
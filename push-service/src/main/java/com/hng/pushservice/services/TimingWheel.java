@@ -0,0 +1,123 @@
+package com.hng.pushservice.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: wheelSize buckets of one tick each, walked by a single thread.
+ * An item lands in the bucket of its due tick modulo wheelSize, with the number of full
+ * turns still to wait; scheduling and expiring are O(1) however many items are pending,
+ * unlike a priority queue. Items expire up to one tick late, never early.
+ */
+final class TimingWheel<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickMillis;
+    private final List<Entry<T>>[] buckets;
+    private final Consumer<T> onExpiry;
+    private final Thread worker;
+    private final long startMillis;
+
+    private long currentTick;
+    private int size;
+
+    private static final class Entry<T> {
+
+        private final T item;
+        private long rounds;
+
+        private Entry(T item, long rounds) {
+            this.item = item;
+            this.rounds = rounds;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(String name, Duration tick, int wheelSize, Consumer<T> onExpiry) {
+        this.tickMillis = tick.toMillis();
+        this.buckets = new List[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.onExpiry = onExpiry;
+        this.startMillis = System.currentTimeMillis();
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    void start() {
+        worker.start();
+    }
+
+    void stop() {
+        worker.interrupt();
+    }
+
+    synchronized void schedule(T item, long dueMillis) {
+        // Round up, so an item never fires before it is due; anything overdue goes in the next tick
+        long dueTick = Math.max(currentTick, (dueMillis - startMillis + tickMillis - 1) / tickMillis);
+        long ticksAhead = dueTick - currentTick;
+        buckets[(int) (dueTick % buckets.length)].add(new Entry<>(item, ticksAhead / buckets.length));
+        size++;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    /** Empties the wheel and returns what was still pending. */
+    synchronized List<T> drain() {
+        List<T> pending = new ArrayList<>(size);
+        for (List<Entry<T>> bucket : buckets) {
+            bucket.forEach(entry -> pending.add(entry.item));
+            bucket.clear();
+        }
+        size = 0;
+        return pending;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long sleep = startMillis + currentTick * tickMillis - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            for (T item : advance()) {
+                try {
+                    onExpiry.accept(item);
+                } catch (Exception e) {
+                    logger.error("Timing wheel callback failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private synchronized List<T> advance() {
+        List<Entry<T>> bucket = buckets[(int) (currentTick % buckets.length)];
+        List<T> expired = new ArrayList<>();
+        Iterator<Entry<T>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.rounds == 0) {
+                expired.add(entry.item);
+                iterator.remove();
+            } else {
+                entry.rounds--;
+            }
+        }
+        size -= expired.size();
+        currentTick++;
+        return expired;
+    }
+}
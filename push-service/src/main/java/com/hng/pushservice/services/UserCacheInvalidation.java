@@ -0,0 +1,83 @@
+package com.hng.pushservice.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Makes user-profile cache evictions reach every replica. An eviction is applied here and
+ * published on the Redis channel push:cache:users; every replica drops the entry from its
+ * own {@link UserProfileCache} when it hears it ("*" drops them all).
+ *
+ * Pub/sub does not keep messages, so a replica that is not subscribed at that moment (Redis
+ * down, still starting) misses the eviction and keeps its entry until app.push.user-cache.ttl
+ * runs out; the TTL stays the upper bound on staleness.
+ */
+@Service
+public class UserCacheInvalidation implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserCacheInvalidation.class);
+
+    static final String CHANNEL = "push:cache:users";
+    static final String ALL = "*";
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserProfileCache userProfileCache;
+    private final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+
+    public UserCacheInvalidation(StringRedisTemplate redisTemplate,
+                                 RedisConnectionFactory connectionFactory,
+                                 UserProfileCache userProfileCache) {
+        this.redisTemplate = redisTemplate;
+        this.userProfileCache = userProfileCache;
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @PostConstruct
+    public void start() {
+        container.afterPropertiesSet();
+        try {
+            container.start();
+        } catch (Exception e) {
+            // The container keeps trying to subscribe; until then only the TTL bounds staleness
+            logger.warn("Not subscribed to {} yet: {}", CHANNEL, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws Exception {
+        container.destroy();
+    }
+
+    /** Evicts the user here and on every other replica. Throws when the broadcast fails. */
+    public void evict(String userId) {
+        userProfileCache.invalidate(userId);
+        redisTemplate.convertAndSend(CHANNEL, userId);
+    }
+
+    public void evictAll() {
+        userProfileCache.invalidateAll();
+        redisTemplate.convertAndSend(CHANNEL, ALL);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ALL.equals(userId)) {
+            userProfileCache.invalidateAll();
+        } else {
+            userProfileCache.invalidate(userId);
+        }
+    }
+}
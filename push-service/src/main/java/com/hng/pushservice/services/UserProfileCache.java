@@ -0,0 +1,101 @@
+package com.hng.pushservice.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.hng.pushservice.dto.UserResponseDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * In-process cache of the parts of a user profile push-service needs (id, push token,
+ * preferences). Concurrent lookups for the same user share one in-flight request to
+ * user-service; entries expire after the configured TTL or on explicit invalidation, which
+ * {@link UserCacheInvalidation} applies on every replica.
+ * Hit, miss and eviction counts are published as the "push.user-profile" cache metrics.
+ */
+@Service
+public class UserProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCache.class);
+
+    private final UserServiceClient userServiceClient;
+    private final boolean enabled;
+    private final AsyncCache<String, UserResponseDto> cache;
+
+    public UserProfileCache(UserServiceClient userServiceClient,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.push.user-cache.enabled:true}") boolean enabled,
+                            @Value("${app.push.user-cache.max-size:100000}") long maxSize,
+                            @Value("${app.push.user-cache.ttl:60s}") Duration ttl) {
+        this.userServiceClient = userServiceClient;
+        this.enabled = enabled;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync(), "push.user-profile");
+    }
+
+    public UserResponseDto get(String userId) {
+        if (!enabled) {
+            return userServiceClient.fetchUser(userId);
+        }
+
+        // Whoever installs the future does the fetch on its own thread; everyone else waits on it
+        CompletableFuture<UserResponseDto> created = new CompletableFuture<>();
+        CompletableFuture<UserResponseDto> future = cache.get(userId, (key, executor) -> created);
+
+        if (future == created) {
+            try {
+                created.complete(profileOf(userServiceClient.fetchUser(userId)));
+            } catch (RuntimeException e) {
+                // Failed futures are dropped by the cache, so the next lookup tries again
+                created.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void invalidate(String userId) {
+        logger.info("Invalidating cached profile for userId: {}", userId);
+        cache.synchronous().invalidate(userId);
+    }
+
+    public void invalidateAll() {
+        logger.info("Invalidating all cached user profiles");
+        cache.synchronous().invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private static UserResponseDto profileOf(UserResponseDto user) {
+        UserResponseDto profile = new UserResponseDto();
+        profile.setId(user.getId());
+        profile.setPushToken(user.getPushToken());
+        profile.setPreferences(user.getPreferences());
+        return profile;
+    }
+}
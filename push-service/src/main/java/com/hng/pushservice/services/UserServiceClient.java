@@ -0,0 +1,110 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.dto.ApiResponseDto;
+import com.hng.pushservice.dto.UserPageDto;
+import com.hng.pushservice.dto.UserResponseDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class UserServiceClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceClient.class);
+
+    @Value("${app.user-service.url:http://localhost:3001/api/v1/users/}")
+    private String userServiceUrl;
+
+    private final RestTemplate restTemplate;
+
+    public UserServiceClient(@Qualifier("userServiceRestTemplate") RestTemplate restTemplate) {
+        this.restTemplate = restTemplate;
+    }
+
+    /** Calls user-service's /health, which leaves a pooled connection open; used by the startup warm-up. */
+    public void ping() {
+        restTemplate.getForEntity(UriComponentsBuilder.fromUriString(userServiceUrl)
+                .replacePath("/health").replaceQuery(null).build().toUri(), String.class);
+    }
+
+    public UserResponseDto fetchUser(String userId) {
+        logger.debug("Fetching user data for userId: {}", userId);
+        logger.info("Fetching user data for userId: {}", userId);
+
+        ParameterizedTypeReference<ApiResponseDto<UserResponseDto>> responseType =
+                new ParameterizedTypeReference<>() {};
+
+        ResponseEntity<ApiResponseDto<UserResponseDto>> responseEntity = restTemplate.exchange(
+                userServiceUrl + userId,
+                HttpMethod.GET,
+                null,
+                responseType
+        );
+
+        ApiResponseDto<UserResponseDto> apiResponse = responseEntity.getBody();
+
+        if (apiResponse == null || !apiResponse.isSuccess() || apiResponse.getData() == null) {
+            logger.warn("Failed to fetch user data or user not found");
+            throw new RuntimeException("Failed to fetch user data or user not found");
+        }
+
+        UserResponseDto user = apiResponse.getData();
+        logger.debug("Fetched user: {} with preferences: {}", user.getId(), user.getPreferences());
+        logger.info("Fetched user: {} with preferences: {}", user.getId(), user.getPreferences());
+
+        return user;
+    }
+
+    /**
+     * Reads one page of users in id order, starting after the given cursor (null for the
+     * first page). Used by fan-out jobs, which walk every user once.
+     */
+    public UserPageDto fetchUserPage(String after, int limit) {
+        logger.debug("Fetching {} users after {}", limit, after);
+
+        String url = UriComponentsBuilder.fromUriString(userServiceUrl)
+                .queryParam("after", after != null ? after : "")
+                .queryParam("limit", limit)
+                .toUriString();
+        ParameterizedTypeReference<ApiResponseDto<List<UserResponseDto>>> responseType =
+                new ParameterizedTypeReference<>() {};
+
+        ApiResponseDto<List<UserResponseDto>> apiResponse =
+                restTemplate.exchange(url, HttpMethod.GET, null, responseType).getBody();
+
+        if (apiResponse == null || !apiResponse.isSuccess() || apiResponse.getData() == null) {
+            throw new RuntimeException("Failed to fetch users after " + after);
+        }
+
+        String nextCursor = null;
+        if (apiResponse.getMeta() instanceof Map<?, ?> meta && meta.get("next_cursor") instanceof String cursor) {
+            nextCursor = cursor;
+        }
+        return new UserPageDto(apiResponse.getData(), nextCursor);
+    }
+
+    /**
+     * Clears the user's push token, but only while it is still the given one, so a token
+     * the app registered in the meantime is left alone. There is no compare-and-set on
+     * user-service, so a registration landing between the read and the write can still be lost.
+     */
+    public void clearPushToken(String userId, String deadToken) {
+        UserResponseDto user = fetchUser(userId);
+        if (!deadToken.equals(user.getPushToken())) {
+            logger.info("User {} already has a new push token, not clearing it", userId);
+            return;
+        }
+        restTemplate.put(userServiceUrl + userId + "/push-token", Map.of("push_token", ""));
+        logger.info("Cleared dead push token of userId: {}", userId);
+    }
+}
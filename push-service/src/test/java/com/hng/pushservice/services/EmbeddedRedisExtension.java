@@ -0,0 +1,58 @@
+package com.hng.pushservice.services;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * A Redis server for the tests of one class, on a free port, emptied before every test.
+ * Register it as a static field with @RegisterExtension and use {@link #template()}.
+ */
+class EmbeddedRedisExtension implements BeforeAllCallback, AfterAllCallback, BeforeEachCallback {
+
+    private RedisServer redis;
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+
+    StringRedisTemplate template() {
+        return redisTemplate;
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) throws IOException {
+        int port = freePort();
+        redis = RedisServer.newRedisServer().bind("127.0.0.1").port(port).setting("save \"\"").build();
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory("127.0.0.1", port);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) throws IOException {
+        connectionFactory.destroy();
+        redis.stop();
+    }
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        }, true);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
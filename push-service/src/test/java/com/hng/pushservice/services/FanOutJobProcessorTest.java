@@ -0,0 +1,182 @@
+package com.hng.pushservice.services;
+
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.MessagingErrorCode;
+import com.google.firebase.messaging.SendResponse;
+import com.hng.pushservice.config.RabbitMQConfig;
+import com.hng.pushservice.dto.FanOutJobDto;
+import com.hng.pushservice.dto.FanOutProgressDto;
+import com.hng.pushservice.dto.PushRequest;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.UserPreferences;
+import com.hng.pushservice.dto.UserResponseDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Where a fan-out campaign resumes: across slices, after a retryable page, and on lookups. */
+class FanOutJobProcessorTest {
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    private final PushJobProcessor jobProcessor = mock(PushJobProcessor.class);
+    private final FcmService fcmService = mock(FcmService.class);
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final JobStatusStore jobStatusStore = mock(JobStatusStore.class);
+    private final List<List<String>> sentPages = new ArrayList<>();
+    private final Set<String> unavailableOnce = new HashSet<>();
+    private FanOutProgressStore progressStore;
+    private FanOutJobProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        progressStore = new FanOutProgressStore(redis.template(), Duration.ofHours(1));
+        processor = new FanOutJobProcessor(jobStatusStore, progressStore, jobProcessor, mock(UserServiceClient.class),
+                fcmService, mock(DeadTokenRegistry.class), mock(StatusReporter.class), rabbitTemplate,
+                new PushMetrics(new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(processor, "pageSize", 2);
+        ReflectionTestUtils.setField(processor, "pagesPerDelivery", 2);
+        ReflectionTestUtils.setField(processor, "maxAttempts", 3);
+
+        when(jobProcessor.claim(anyString())).thenReturn(true);
+        when(jobProcessor.renderTemplate(any())).thenReturn(new RenderResponseDto("Sale", "Everything half off", null, null));
+        when(jobProcessor.fetchUser(anyString())).thenAnswer(invocation -> user(invocation.getArgument(0)));
+        when(fcmService.sendEach(anyList())).thenAnswer(invocation -> {
+            List<PushRequest> requests = invocation.getArgument(0);
+            sentPages.add(requests.stream().map(PushRequest::getUserId).toList());
+            return requests.stream().map(request -> unavailableOnce.remove(request.getUserId())
+                    ? failure(MessagingErrorCode.UNAVAILABLE) : success()).toList();
+        });
+    }
+
+    @Test
+    void resumesTheNextSliceAtTheCursor() {
+        FanOutJobDto job = job("u1", "u2", "u3", "u4", "u5");
+
+        processor.process(job, 1);
+
+        assertThat(sentPages).containsExactly(List.of("u1", "u2"), List.of("u3", "u4"));
+        assertThat(progressStore.get("c1").getCursor()).isEqualTo("4");
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.PUSH_FANOUT_QUEUE), eq(job), any(MessagePostProcessor.class));
+
+        processor.process(job, 1);
+
+        assertThat(sentPages).containsExactly(List.of("u1", "u2"), List.of("u3", "u4"), List.of("u5"));
+        FanOutProgressDto progress = progressStore.get("c1");
+        assertThat(progress.getState()).isEqualTo(FanOutProgressStore.COMPLETED);
+        assertThat(progress.getDelivered()).isEqualTo(5);
+        verify(jobProcessor).renderTemplate(any());
+    }
+
+    @Test
+    void aRetryablePageKeepsTheCursorAndOnlyResendsItsFailures() {
+        FanOutJobDto job = job("u1", "u2", "u3", "u4");
+        unavailableOnce.add("u4");
+
+        processor.process(job, 1);
+
+        assertThat(sentPages).containsExactly(List.of("u1", "u2"), List.of("u3", "u4"));
+        assertThat(progressStore.get("c1").getCursor()).isEqualTo("2");
+        assertThat(progressStore.get("c1").getDelivered()).isEqualTo(3);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(RabbitMQConfig.PUSH_FANOUT_WAIT_QUEUE), eq(job), any(MessagePostProcessor.class));
+
+        processor.process(job, 2);
+
+        assertThat(sentPages.get(2)).containsExactly("u4");
+        FanOutProgressDto progress = progressStore.get("c1");
+        assertThat(progress.getState()).isEqualTo(FanOutProgressStore.COMPLETED);
+        assertThat(progress.getDelivered()).isEqualTo(4);
+    }
+
+    @Test
+    void replayingARecordedPageSendsToNobodyTwice() {
+        FanOutJobDto job = job("u1", "u2", "u3");
+        // As if a slice recorded page one and then crashed before moving on
+        progressStore.recordPage("c1", Map.of("u1", JobStatusStore.DELIVERED), null);
+
+        processor.process(job, 1);
+
+        assertThat(sentPages).containsExactly(List.of("u2"), List.of("u3"));
+        assertThat(progressStore.get("c1").getDelivered()).isEqualTo(3);
+    }
+
+    @Test
+    void unknownUsersAreSkippedAndFailedLookupsRetried() {
+        FanOutJobDto job = job("u1", "gone", "u3", "flaky");
+        when(jobProcessor.fetchUser("gone")).thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+        when(jobProcessor.fetchUser("flaky")).thenThrow(new IllegalStateException("user-service timed out"));
+
+        processor.process(job, 1);
+
+        assertThat(sentPages).containsExactly(List.of("u1"));
+        FanOutProgressDto progress = progressStore.get("c1");
+        assertThat(progress.getCursor()).isEqualTo("2");
+        assertThat(progress.getSkipped()).isEqualTo(1);
+        verify(rabbitTemplate, never()).convertAndSend(eq(""), eq(RabbitMQConfig.PUSH_FANOUT_QUEUE), any(Object.class), any(MessagePostProcessor.class));
+
+        processor.process(job, 3);
+
+        assertThat(sentPages).containsExactly(List.of("u1"), List.of("u3"));
+        progress = progressStore.get("c1");
+        assertThat(progress.getState()).isEqualTo(FanOutProgressStore.COMPLETED);
+        assertThat(progress.getDelivered()).isEqualTo(2);
+        assertThat(progress.getSkipped()).isEqualTo(1);
+        assertThat(progress.getFailed()).isEqualTo(1);
+    }
+
+    private static FanOutJobDto job(String... userIds) {
+        FanOutJobDto job = new FanOutJobDto();
+        job.setNotificationId("c1");
+        job.setTemplateCode("sale");
+        job.setUserIds(List.of(userIds));
+        return job;
+    }
+
+    private static UserResponseDto user(String id) {
+        UserPreferences preferences = new UserPreferences();
+        preferences.setPush(true);
+        UserResponseDto user = new UserResponseDto();
+        user.setId(id);
+        user.setPushToken("token-" + id);
+        user.setPreferences(preferences);
+        return user;
+    }
+
+    private static SendResponse success() {
+        SendResponse response = mock(SendResponse.class);
+        when(response.isSuccessful()).thenReturn(true);
+        return response;
+    }
+
+    private static SendResponse failure(MessagingErrorCode code) {
+        FirebaseMessagingException exception = mock(FirebaseMessagingException.class);
+        when(exception.getMessagingErrorCode()).thenReturn(code);
+        SendResponse response = mock(SendResponse.class);
+        when(response.getException()).thenReturn(exception);
+        return response;
+    }
+}
@@ -0,0 +1,122 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.http.DownstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class FcmRateLimiterTest {
+
+    private final ListenerPauseControl pauseControl = mock(ListenerPauseControl.class);
+
+    @Test
+    void growsByAboutOnePerRoundOfSuccessfulSends() {
+        FcmRateLimiter limiter = limiter(10, Duration.ofSeconds(1));
+
+        limiter.release(0, 9, false, null);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        limiter.release(0, 11, false, null);
+        assertThat(limiter.getLimit()).isEqualTo(11);
+    }
+
+    @Test
+    void neverGrowsPastTheMaximum() {
+        FcmRateLimiter limiter = limiter(99, Duration.ofSeconds(1));
+
+        limiter.release(0, 10_000, false, null);
+
+        assertThat(limiter.getLimit()).isEqualTo(100);
+    }
+
+    @Test
+    void halvesOnThrottlingOncePerCooldown() {
+        FcmRateLimiter limiter = limiter(40, Duration.ofHours(1));
+
+        limiter.release(0, 0, true, Duration.ZERO);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        // The rest of the same burst counts as one congestion event
+        limiter.release(0, 0, true, Duration.ZERO);
+        limiter.release(0, 0, true, Duration.ZERO);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void cutsAgainAfterTheCooldownButNotBelowTheMinimum() {
+        FcmRateLimiter limiter = limiter(40, Duration.ZERO);
+
+        limiter.release(0, 0, true, Duration.ZERO);
+        limiter.release(0, 0, true, Duration.ZERO);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(0, 0, true, Duration.ZERO);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void holdsSendsUntilRetryAfterHasPassed() {
+        FcmRateLimiter limiter = new FcmRateLimiter(pauseControl, new SimpleMeterRegistry(), true, 10, 2, 100, 0.5,
+                Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofSeconds(5));
+        long start = System.nanoTime();
+
+        limiter.release(0, 0, true, Duration.ofMillis(200));
+        assertThat(limiter.acquire(1)).isEqualTo(1);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(190));
+        assertThat(limiter.isThrottled()).isFalse();
+    }
+
+    @Test
+    void pausesTheListenersOnlyForLongRetryAfters() {
+        FcmRateLimiter limiter = limiter(10, Duration.ofSeconds(1));
+
+        limiter.release(0, 0, true, Duration.ofSeconds(1));
+        verify(pauseControl, never()).pauseFor(anyString(), any());
+
+        limiter.release(0, 0, true, Duration.ofSeconds(5));
+        verify(pauseControl).pauseFor("FCM throttling", Duration.ofSeconds(5));
+    }
+
+    @Test
+    void letsAnOversizedBatchThroughAloneAndTimesOutOthers() {
+        FcmRateLimiter limiter = limiter(4, Duration.ofSeconds(1));
+
+        assertThat(limiter.acquire(10)).isEqualTo(10);
+        assertThat(limiter.getInFlight()).isEqualTo(10);
+        assertThatThrownBy(() -> limiter.acquire(1)).isInstanceOf(DownstreamUnavailableException.class);
+
+        limiter.release(10, 10, false, null);
+        assertThat(limiter.getInFlight()).isZero();
+        assertThat(limiter.acquire(4)).isEqualTo(4);
+    }
+
+    @Test
+    void doesNothingWhenDisabled() {
+        FcmRateLimiter limiter = new FcmRateLimiter(pauseControl, new SimpleMeterRegistry(), false, 1, 1, 1, 0.5,
+                Duration.ZERO, Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofMillis(50));
+
+        limiter.release(0, 0, true, Duration.ofMinutes(1));
+
+        assertThat(limiter.acquire(100)).isEqualTo(100);
+        assertThat(limiter.isThrottled()).isFalse();
+        verify(pauseControl, never()).pauseFor(anyString(), any());
+    }
+
+    // min 2, max 100, halving, 5s pause threshold, and a short wait so a full limiter fails fast
+    private FcmRateLimiter limiter(int initialLimit, Duration cooldown) {
+        return new FcmRateLimiter(pauseControl, new SimpleMeterRegistry(), true, initialLimit, 2, 100, 0.5,
+                cooldown, Duration.ofSeconds(1), Duration.ofSeconds(5), Duration.ofMillis(50));
+    }
+}
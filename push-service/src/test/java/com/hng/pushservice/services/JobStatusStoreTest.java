@@ -0,0 +1,130 @@
+package com.hng.pushservice.services;
+
+import com.hng.pushservice.services.JobStatusStore.ClaimResult;
+import com.hng.pushservice.services.JobStatusStore.Layout;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The claim, extend and release scripts against a real Redis, with two consumers. */
+class JobStatusStoreTest {
+
+    private static final Duration LEASE = Duration.ofMillis(500);
+
+    @RegisterExtension
+    static final EmbeddedRedisExtension redis = new EmbeddedRedisExtension();
+
+    @Test
+    void onlyOneConsumerClaimsAJob() {
+        JobStatusStore first = store(Layout.KEYS);
+        JobStatusStore second = store(Layout.KEYS);
+
+        assertThat(first.claim("n1")).isEqualTo(ClaimResult.CLAIMED);
+        assertThat(second.claim("n1")).isEqualTo(ClaimResult.IN_PROGRESS);
+        assertThat(first.claim("n1")).isEqualTo(ClaimResult.IN_PROGRESS);
+        assertThat(redis.template().opsForValue().get("status:n1")).startsWith("PROCESSING:");
+    }
+
+    @Test
+    void finishedJobsAreCompletedButFailedOnesCanBeClaimedAgain() {
+        JobStatusStore first = store(Layout.KEYS);
+        first.claim("delivered");
+        first.claim("failed");
+
+        first.finishAll(Map.of("delivered", JobStatusStore.DELIVERED, "failed", JobStatusStore.FAILED));
+
+        JobStatusStore second = store(Layout.KEYS);
+        assertThat(second.claim("delivered")).isEqualTo(ClaimResult.COMPLETED);
+        assertThat(second.claim("failed")).isEqualTo(ClaimResult.CLAIMED);
+    }
+
+    @Test
+    void anExpiredLeaseCanBeClaimedByAnotherConsumer() throws InterruptedException {
+        JobStatusStore first = store(Layout.KEYS);
+        JobStatusStore second = store(Layout.KEYS);
+        first.claim("n1");
+
+        Thread.sleep(LEASE.toMillis() + 100);
+
+        assertThat(second.claim("n1")).isEqualTo(ClaimResult.CLAIMED);
+    }
+
+    @Test
+    void onlyTheOwnerExtendsTheLease() throws InterruptedException {
+        JobStatusStore first = store(Layout.KEYS);
+        JobStatusStore second = store(Layout.KEYS);
+        first.claim("n1");
+        first.claim("n2");
+        Thread.sleep(300);
+
+        first.extend("n1");
+        second.extendAll(List.of("n2"));
+        Thread.sleep(350);
+
+        assertThat(second.claim("n1")).isEqualTo(ClaimResult.IN_PROGRESS);
+        assertThat(second.claim("n2")).isEqualTo(ClaimResult.CLAIMED);
+    }
+
+    @Test
+    void extendAllPushesOutEveryLeaseItHolds() throws InterruptedException {
+        JobStatusStore first = store(Layout.KEYS);
+        first.claimAll(List.of("n1", "n2"));
+        Thread.sleep(300);
+
+        first.extendAll(List.of("n1", "n2"));
+
+        assertThat(redis.template().getExpire("status:n1", TimeUnit.MILLISECONDS)).isGreaterThan(300);
+        assertThat(redis.template().getExpire("status:n2", TimeUnit.MILLISECONDS)).isGreaterThan(300);
+    }
+
+    @Test
+    void onlyTheOwnerReleasesTheLease() {
+        JobStatusStore first = store(Layout.KEYS);
+        JobStatusStore second = store(Layout.KEYS);
+        first.claim("n1");
+
+        second.release("n1");
+        assertThat(second.claim("n1")).isEqualTo(ClaimResult.IN_PROGRESS);
+
+        first.release("n1");
+        assertThat(second.claim("n1")).isEqualTo(ClaimResult.CLAIMED);
+    }
+
+    @Test
+    void claimAllAnswersEachJobInOrder() {
+        JobStatusStore first = store(Layout.KEYS);
+        first.claim("leased");
+        first.claim("done");
+        first.finish("done", JobStatusStore.SKIPPED);
+
+        JobStatusStore second = store(Layout.KEYS);
+        assertThat(second.claimAll(List.of("new", "leased", "done")))
+                .containsExactly(ClaimResult.CLAIMED, ClaimResult.IN_PROGRESS, ClaimResult.COMPLETED);
+    }
+
+    @Test
+    void bucketLayoutFindsFinalStatusesInTheBuckets() {
+        JobStatusStore first = store(Layout.BUCKETS);
+        first.claimAll(List.of("n1", "n2"));
+
+        first.finishAll(Map.of("n1", JobStatusStore.SUPERSEDED, "n2", JobStatusStore.FAILED));
+
+        assertThat(redis.template().hasKey("status:n1")).isFalse();
+        assertThat(redis.template().keys("status:bucket:*")).isNotEmpty();
+        JobStatusStore second = store(Layout.BUCKETS);
+        assertThat(second.claimAll(List.of("n1", "n2"))).containsExactly(ClaimResult.COMPLETED, ClaimResult.CLAIMED);
+    }
+
+    // Each store is its own consumer, with its own lease value and near-cache
+    private static JobStatusStore store(Layout layout) {
+        return new JobStatusStore(redis.template(), new SimpleMeterRegistry(), LEASE, Duration.ofHours(2), layout,
+                Duration.ofHours(1), 16, 100);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hng.pushservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hng.pushservice.dto.RenderResponseDto;
+import com.hng.pushservice.dto.TemplateDefinitionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Definitions as template-service's /compiled endpoint serves them, and the output its
+ * /render gives for the same variables; a local render has to be identical.
+ */
+class LocalTemplateTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // subject "Hi {{ name }}, your {{item}} shipped", body "{{a}}{{b}} {{}} see {{link",
+    // image_url "https://cdn/{{ image }}.png", no action_link
+    private static final String DEFINITION = """
+            {"template_code": "order_shipped", "version": 3,
+             "subject": {"literals": ["Hi ", ", your ", " shipped"], "names": ["name", "item"]},
+             "body": {"literals": ["", "", " {{}} see {{link"], "names": ["a", "b"]},
+             "image_url": {"literals": ["https://cdn/", ".png"], "names": ["image"]},
+             "action_link": null}
+            """;
+
+    @Test
+    void rendersWhatTemplateServiceRenders() throws Exception {
+        LocalTemplate template = new LocalTemplate(definition(DEFINITION), "\"3-abc\"", 0);
+
+        RenderResponseDto rendered = template.render(Map.of(
+                "name", "Ada", "item", "order", "a", "1", "b", "{{b}}", "image", "box", "unused", "x"));
+
+        assertThat(rendered).isEqualTo(new RenderResponseDto(
+                "Hi Ada, your order shipped", "1{{b}} {{}} see {{link", "https://cdn/box.png", null));
+        assertThat(template.getVersion()).isEqualTo(3);
+        assertThat(template.getETag()).isEqualTo("\"3-abc\"");
+    }
+
+    @Test
+    void leavesMissingVariablesToTemplateService() throws Exception {
+        LocalTemplate template = new LocalTemplate(definition(DEFINITION), "\"3-abc\"", 0);
+        Map<String, String> withoutImage = Map.of("name", "Ada", "item", "order", "a", "1", "b", "2");
+
+        assertThat(template.render(withoutImage)).isNull();
+        assertThat(template.render(null)).isNull();
+    }
+
+    @Test
+    void fieldsWithoutSlotsNeedNoVariables() throws Exception {
+        LocalTemplate template = new LocalTemplate(definition("""
+                {"template_code": "notice", "subject": {"literals": ["Maintenance tonight"], "names": []},
+                 "body": {"literals": [""], "names": []}}
+                """), null, 0);
+
+        assertThat(template.render(null)).isEqualTo(new RenderResponseDto("Maintenance tonight", "", null, null));
+        assertThat(template.getVersion()).isZero();
+    }
+
+    @Test
+    void rejectsDefinitionsWithMismatchedLiteralsAndNames() {
+        assertThatThrownBy(() -> new LocalTemplate(definition("""
+                {"template_code": "broken", "subject": {"literals": ["Hi "], "names": ["name"]}}
+                """), null, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void recordsWhenItWasLastChecked() throws Exception {
+        LocalTemplate template = new LocalTemplate(definition(DEFINITION), null, 100);
+
+        template.checked(250);
+
+        assertThat(template.getCheckedAt()).isEqualTo(250);
+    }
+
+    private TemplateDefinitionDto definition(String json) throws Exception {
+        return objectMapper.readValue(json, TemplateDefinitionDto.class);
+    }
+}
@@ -0,0 +1,110 @@
+package com.hng.pushservice.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    // Eight 10ms buckets, so anything due after 80ms waits at least one full turn
+    private static final Duration TICK = Duration.ofMillis(10);
+    private static final int WHEEL_SIZE = 8;
+
+    private final Map<String, Long> firedAt = new ConcurrentHashMap<>();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+    private TimingWheel<String> wheel;
+
+    @AfterEach
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void expiresItemsNoEarlierThanTheyAreDue() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        start(item -> done.countDown());
+        long now = System.currentTimeMillis();
+        Map<String, Long> due = Map.of("soon", now + 25, "later", now + 60, "turns", now + 250);
+        due.forEach(wheel::schedule);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        due.forEach((item, dueAt) -> assertThat(firedAt.get(item)).as(item).isGreaterThanOrEqualTo(dueAt));
+        assertThat(order).containsExactly("soon", "later", "turns");
+    }
+
+    @Test
+    void itemsSeveralTurnsOutWaitForTheirTurn() throws Exception {
+        CountDownLatch done = new CountDownLatch(2);
+        start(item -> done.countDown());
+        long now = System.currentTimeMillis();
+        // Both land in the same bucket, one and three turns apart
+        wheel.schedule("near", now + 40);
+        wheel.schedule("far", now + 40 + 2 * WHEEL_SIZE * TICK.toMillis());
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("near", "far");
+        assertThat(firedAt.get("far")).isGreaterThanOrEqualTo(now + 40 + 2 * WHEEL_SIZE * TICK.toMillis());
+    }
+
+    @Test
+    void overdueItemsExpireOnTheNextTick() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        start(item -> done.countDown());
+
+        wheel.schedule("late", System.currentTimeMillis() - 60_000);
+
+        assertThat(done.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void drainReturnsWhatIsPendingAndEmptiesTheWheel() {
+        start(item -> { });
+        long now = System.currentTimeMillis();
+        wheel.schedule("a", now + 60_000);
+        wheel.schedule("b", now + 120_000);
+        assertThat(wheel.size()).isEqualTo(2);
+
+        assertThat(wheel.drain()).containsExactlyInAnyOrder("a", "b");
+        assertThat(wheel.size()).isZero();
+        assertThat(wheel.drain()).isEmpty();
+    }
+
+    @Test
+    void aFailingCallbackDoesNotStopTheWheel() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        start(item -> {
+            if (item.equals("bad")) {
+                throw new IllegalStateException("boom");
+            }
+            done.countDown();
+        });
+        long now = System.currentTimeMillis();
+        wheel.schedule("bad", now + 10);
+        wheel.schedule("good", now + 50);
+
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("bad", "good");
+    }
+
+    private void start(Consumer<String> callback) {
+        wheel = new TimingWheel<>("test-wheel", TICK, WHEEL_SIZE, item -> {
+            firedAt.put(item, System.currentTimeMillis());
+            order.add(item);
+            callback.accept(item);
+        });
+        wheel.start();
+    }
+}
@@ -4,24 +4,36 @@ import com.hng.templateservice.dto.ApiResponseDto;
 import com.hng.templateservice.dto.NotificationRequestdto;
 import com.hng.templateservice.dto.RenderRequestDto;
 import com.hng.templateservice.dto.RenderResponseDto;
+import com.hng.templateservice.dto.TemplateDefinitionDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hng.templateservice.models.NotificationTemplate;
+import com.hng.templateservice.service.BatchRenderService;
 import com.hng.templateservice.service.TemplateRenderService;
 import com.hng.templateservice.service.TemplateService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 
 @RestController
 @RequestMapping("/api/v1/templates")
 @RequiredArgsConstructor
 public class TemplateController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final TemplateService templateService;
     private final TemplateRenderService renderService;
+    private final BatchRenderService batchRenderService;
+    private final ObjectMapper objectMapper;
     private final Logger logger = LoggerFactory.getLogger(TemplateController.class);
 
     @PostMapping
@@ -56,6 +68,40 @@ public class TemplateController {
         return ResponseEntity.status(HttpStatus.OK).body(template);
     }
 
+    // Compiled form by Template key, for services that render in-process; answers 304 while
+    // the ETag they hold is current
+    @GetMapping("/{templateKey}/compiled")
+    public ResponseEntity<TemplateDefinitionDto> getCompiledTemplate(@PathVariable String templateKey,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+
+        TemplateDefinitionDto definition = renderService.definition(templateKey);
+
+        if (definition == null){
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        String eTag = "\"" + definition.getETag() + "\"";
+        if (ifNoneMatch != null && ifNoneMatch.replace("W/", "").equals(eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).eTag(eTag).body(definition);
+    }
+
+    // Update by Template key; renders use the new version from then on
+    @PutMapping("/{templateKey}")
+    public ResponseEntity<NotificationTemplate> updateTemplate(@PathVariable String templateKey,
+                                                               @RequestBody NotificationRequestdto req){
+
+        NotificationTemplate template = templateService.updateTemplate(templateKey, req);
+
+        if (template == null){
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        return ResponseEntity.status(HttpStatus.OK).body(template);
+    }
+
     @PostMapping("/render")
 public ResponseEntity<ApiResponseDto<?>> renderTemplate(@RequestBody RenderRequestDto request) {
     logger.info("Received render request for template key: {}", request.getTemplateKey());
@@ -79,4 +125,27 @@ public ResponseEntity<ApiResponseDto<?>> renderTemplate(@RequestBody RenderReque
         return ResponseEntity.status(400).body(errorResponse);
     }
 }
+
+    // Renders one template for many variable sets: NDJSON or a JSON array in, NDJSON out
+    @PostMapping("/render/batch")
+    public void renderBatch(@RequestParam("template_code") String templateKey,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        logger.info("Received batch render request for template key: {}", templateKey);
+        boolean ndjson = request.getContentType() != null && request.getContentType().startsWith(NDJSON);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        try {
+            batchRenderService.render(templateKey, request.getInputStream(), ndjson, response.getOutputStream());
+        } catch (RuntimeException e) {
+            if (response.isCommitted()) {
+                throw e;
+            }
+            // Nothing streamed yet (unknown template), so answer like a single render
+            response.reset();
+            response.setStatus(400);
+            response.setContentType("application/json");
+            objectMapper.writeValue(response.getOutputStream(),
+                    ApiResponseDto.fail("Template rendering failed", e.getMessage(), null));
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.hng.templateservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// One NDJSON line of a batch render: the rendered fields, or the error for that item
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"index", "error"})
+public class BatchRenderItemDto {
+
+    // Position of the variable set in the request, from 0
+    @JsonProperty("index")
+    private long index;
+
+    @JsonUnwrapped
+    private RenderResponseDto rendered;
+
+    @JsonProperty("error")
+    private String error;
+}
@@ -0,0 +1,16 @@
+package com.hng.templateservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+// One template field split at its placeholders: literals[i] comes before the value of
+// names[i], and the last literal after the last value
+@Data
+@AllArgsConstructor
+public class CompiledTemplateDto {
+
+    private List<String> literals;
+    private List<String> names;
+}
@@ -13,4 +13,5 @@ public class NotificationRequestdto {
     private String actionLink;
     private String type;
     private Integer version;
+    private Boolean cacheRendered;
 }
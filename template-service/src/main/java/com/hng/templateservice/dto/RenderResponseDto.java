@@ -1,13 +1,30 @@
 package com.hng.templateservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @AllArgsConstructor
 public class RenderResponseDto {
 
+    @JsonProperty("rendered_subject")
     private String renderedSubject;
+
+    @JsonProperty("rendered_body")
     private String renderedBody;
 
+    @JsonProperty("rendered_image_url")
+    private String renderedImageUrl;
+
+    @JsonProperty("rendered_action_link")
+    private String renderedActionLink;
+
+    // Placeholders that had no value and were left empty; omitted when there were none
+    @JsonProperty("missing_variables")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> missingVariables;
 }
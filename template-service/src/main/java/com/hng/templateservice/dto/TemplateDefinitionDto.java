@@ -0,0 +1,32 @@
+package com.hng.templateservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// A template in its compiled form, for services that render it themselves; a field that is
+// not set is null
+@Data
+@AllArgsConstructor
+public class TemplateDefinitionDto {
+
+    @JsonProperty("template_code")
+    private String templateKey;
+
+    private Integer version;
+
+    private CompiledTemplateDto subject;
+
+    private CompiledTemplateDto body;
+
+    @JsonProperty("image_url")
+    private CompiledTemplateDto imageUrl;
+
+    @JsonProperty("action_link")
+    private CompiledTemplateDto actionLink;
+
+    // Sent as the ETag header rather than in the body
+    @JsonIgnore
+    private String eTag;
+}
@@ -33,6 +33,10 @@ public class NotificationTemplate {
     
     private String type;
     private Integer version;
+
+    // false for personalized templates, whose rendered output is not worth caching
+    @JsonProperty("cache_rendered")
+    private Boolean cacheRendered;
 }
 
 
@@ -2,7 +2,9 @@ package com.hng.templateservice.repository;
 
 import com.hng.templateservice.models.NotificationTemplate;
 import com.hng.templateservice.models.NotificationType;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -14,6 +16,11 @@ public interface NotificationTemplateRepository extends JpaRepository<Notificati
 
     NotificationTemplate findByTemplateKey(String templateKey);
 
+    // Row-locked until the transaction ends, so concurrent updates take turns bumping the version
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM NotificationTemplate t WHERE t.templateKey = ?1")
+    NotificationTemplate findForUpdateByTemplateKey(String templateKey);
+
     @Query(value = "SELECT * FROM notification_template WHERE template_key = ?1", nativeQuery = true)
     Optional<NotificationTemplate> optFindByTemplateKey(String templateKey);
 
@@ -0,0 +1,195 @@
+package com.hng.templateservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hng.templateservice.dto.BatchRenderItemDto;
+import com.hng.templateservice.dto.RenderResponseDto;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders one template for many variable sets, reading the sets and writing the results as
+ * it goes, one NDJSON line per set: {"index":n, "rendered_subject":...} or {"index":n,
+ * "error":...}. Only the current set and its result are held, so memory does not grow with
+ * the batch, and output is flushed every flush-every items.
+ *
+ * The input is either NDJSON, one variable map per line, or a JSON array of maps. A set that
+ * is not a map of values, or can not be rendered (strict variables), gets an error line and
+ * the rest carry on. In NDJSON a malformed line is such an error too; in an array the parser
+ * can not find its place again after malformed JSON, so that error line is the last one.
+ */
+@Service
+public class BatchRenderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchRenderService.class);
+
+    private final TemplateCache templateCache;
+    private final TemplateRenderService renderService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader variablesReader;
+    private final ObjectWriter itemWriter;
+    private final int flushEvery;
+
+    private final Timer batchTimer;
+    private final Counter rendered;
+    private final Counter failed;
+
+    public BatchRenderService(TemplateCache templateCache,
+                              TemplateRenderService renderService,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${app.template.render.batch.flush-every:100}") int flushEvery) {
+        this.templateCache = templateCache;
+        this.renderService = renderService;
+        this.objectMapper = objectMapper;
+        this.variablesReader = objectMapper.readerFor(new TypeReference<Map<String, String>>() {});
+        this.itemWriter = objectMapper.writerFor(BatchRenderItemDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.flushEvery = Math.max(1, flushEvery);
+        this.batchTimer = Timer.builder("template.render.batch.duration")
+                .description("Time to stream a whole batch render")
+                .register(meterRegistry);
+        this.rendered = Counter.builder("template.render.batch.items")
+                .description("Variable sets in batch renders")
+                .tag("result", "rendered")
+                .register(meterRegistry);
+        this.failed = Counter.builder("template.render.batch.items")
+                .description("Variable sets in batch renders")
+                .tag("result", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Streams the results of every variable set in input. An unknown template is reported by
+     * throwing before anything has been written.
+     */
+    public void render(String templateKey, InputStream input, boolean ndjson, OutputStream output) throws IOException {
+        CompiledNotification compiledTemplate = templateCache.get(templateKey);
+        if (compiledTemplate == null) {
+            throw new RuntimeException("Template not found for key: " + templateKey);
+        }
+        long startedAt = System.nanoTime();
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            Batch batch = new Batch(compiledTemplate, generator);
+            if (ndjson) {
+                readLines(input, batch);
+            } else {
+                readArray(input, batch);
+            }
+            if (batch.index > 0) {
+                generator.writeRaw('\n');
+            }
+            logger.info("Batch rendered {} variable sets of template {}", batch.index, templateKey);
+        } finally {
+            batchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void readLines(InputStream input, Batch batch) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode variables;
+            try {
+                variables = objectMapper.readTree(line);
+            } catch (JsonProcessingException e) {
+                batch.fail("Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            batch.render(variables);
+        }
+    }
+
+    private void readArray(InputStream input, Batch batch) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            JsonToken token = parser.nextToken();
+            // A bare sequence of maps, with no array around it, is read the same way
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                batch.render(parser.readValueAsTree());
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // Nothing after this can be read reliably
+            batch.fail("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    /** Where a batch is up to: the next index, and the output it writes to. */
+    private final class Batch {
+
+        private final CompiledNotification template;
+        private final JsonGenerator generator;
+        private long index;
+
+        private Batch(CompiledNotification template, JsonGenerator generator) {
+            this.template = template;
+            this.generator = generator;
+        }
+
+        /** Renders one set, already parsed; one that is not a map of values is an error line. */
+        private void render(JsonNode json) throws IOException {
+            if (json == null || !json.isObject()) {
+                fail("Expected an object of variables");
+                return;
+            }
+            RenderResponseDto result;
+            try {
+                Map<String, String> variables = variablesReader.readValue(json);
+                result = renderService.renderCached(template, variables);
+            } catch (JsonProcessingException e) {
+                fail("Invalid variables: " + e.getOriginalMessage());
+                return;
+            } catch (RuntimeException e) {
+                fail(e.getMessage());
+                return;
+            }
+            rendered.increment();
+            write(new BatchRenderItemDto(index, result, null));
+        }
+
+        private void fail(String error) throws IOException {
+            failed.increment();
+            write(new BatchRenderItemDto(index, null, error));
+        }
+
+        private void write(BatchRenderItemDto item) throws IOException {
+            itemWriter.writeValue(generator, item);
+            if (++index % flushEvery == 0) {
+                generator.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hng.templateservice.service;
+
+import com.hng.templateservice.models.NotificationTemplate;
+
+import java.util.Objects;
+import java.util.TreeSet;
+
+/** A template as loaded, with its four renderable fields compiled. */
+final class CompiledNotification {
+
+    private final NotificationTemplate template;
+    private final CompiledTemplate subject;
+    private final CompiledTemplate body;
+    private final CompiledTemplate imageUrl;
+    private final CompiledTemplate actionLink;
+    private final String eTag;
+    private final String[] variableNames;
+
+    CompiledNotification(NotificationTemplate template) {
+        this.template = template;
+        this.subject = CompiledTemplate.compile(template.getSubjectTemplate());
+        this.body = CompiledTemplate.compile(template.getBodyTemplate());
+        this.imageUrl = CompiledTemplate.compile(template.getImageUrl());
+        this.actionLink = CompiledTemplate.compile(template.getActionLink());
+        TreeSet<String> names = new TreeSet<>();
+        for (CompiledTemplate field : new CompiledTemplate[] {subject, body, imageUrl, actionLink}) {
+            if (field != null) {
+                names.addAll(field.getNames());
+            }
+        }
+        this.variableNames = names.toArray(String[]::new);
+        // The version alone would miss edits made straight in the database
+        this.eTag = versionOf(template) + "-" + Integer.toHexString(Objects.hash(template.getSubjectTemplate(),
+                template.getBodyTemplate(), template.getImageUrl(), template.getActionLink()));
+    }
+
+    NotificationTemplate getTemplate() {
+        return template;
+    }
+
+    /** Changes whenever the version or any of the four fields does. */
+    String getETag() {
+        return eTag;
+    }
+
+    /** Every placeholder name in the four fields, once each, sorted. */
+    String[] getVariableNames() {
+        return variableNames;
+    }
+
+    /** False for templates saved with cache_rendered=false; unset means true. */
+    boolean isOutputCacheable() {
+        return !Boolean.FALSE.equals(template.getCacheRendered());
+    }
+
+    int getVersion() {
+        return versionOf(template);
+    }
+
+    /** Templates saved before versions were set count as version 0. */
+    static int versionOf(NotificationTemplate template) {
+        return template.getVersion() != null ? template.getVersion() : 0;
+    }
+
+    CompiledTemplate getSubject() {
+        return subject;
+    }
+
+    CompiledTemplate getBody() {
+        return body;
+    }
+
+    CompiledTemplate getImageUrl() {
+        return imageUrl;
+    }
+
+    CompiledTemplate getActionLink() {
+        return actionLink;
+    }
+}
@@ -0,0 +1,105 @@
+package com.hng.templateservice.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A template string parsed once into literal segments and {{name}} slots: literals[i] is
+ * followed by the value of names[i], and the last literal ends the output. Whitespace inside
+ * the braces is ignored, and a "{{" without a closing "}}" is kept as text.
+ *
+ * Rendering is one pass: the exact output length is added up first, then everything is
+ * appended to a builder of that size, so each render allocates the builder and the result
+ * however many variables there are.
+ */
+final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /** Returns null for a null source, so an unset field renders as null. */
+    static CompiledTemplate compile(String source) {
+        if (source == null) {
+            return null;
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int from = 0;
+        StringBuilder literal = new StringBuilder();
+        while (true) {
+            int open = source.indexOf(OPEN, from);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literal.append(source, from, source.length());
+                break;
+            }
+            String name = source.substring(open + OPEN.length(), close).trim();
+            if (name.isEmpty()) {
+                // "{{}}" is not a slot; keep it as text
+                literal.append(source, from, close + CLOSE.length());
+            } else {
+                literal.append(source, from, open);
+                literals.add(literal.toString());
+                names.add(name);
+                literal.setLength(0);
+            }
+            from = close + CLOSE.length();
+        }
+        literals.add(literal.toString());
+        return new CompiledTemplate(literals.toArray(String[]::new), names.toArray(String[]::new));
+    }
+
+    /** The text before each slot and after the last one; one more than there are names. */
+    List<String> getLiterals() {
+        return List.of(literals);
+    }
+
+    List<String> getNames() {
+        return List.of(names);
+    }
+
+    /**
+     * Fills the slots from variables. A slot with no value renders empty and its name is
+     * added to missing (once per slot, so callers that care should collect into a set).
+     */
+    String render(Map<String, String> variables, Collection<String> missing) {
+        if (names.length == 0) {
+            return literals[0];
+        }
+        int length = literalLength;
+        for (String name : names) {
+            String value = variables != null ? variables.get(name) : null;
+            if (value != null) {
+                length += value.length();
+            }
+        }
+        StringBuilder output = new StringBuilder(length);
+        for (int i = 0; i < names.length; i++) {
+            output.append(literals[i]);
+            String value = variables != null ? variables.get(names[i]) : null;
+            if (value != null) {
+                output.append(value);
+            } else {
+                missing.add(names[i]);
+            }
+        }
+        output.append(literals[names.length]);
+        return output.toString();
+    }
+}
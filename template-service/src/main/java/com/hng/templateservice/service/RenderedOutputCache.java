@@ -0,0 +1,130 @@
+package com.hng.templateservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hng.templateservice.dto.RenderResponseDto;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Rendered output by template and variables, for traffic that sends the same variables to
+ * many recipients ("{{app_name}} maintenance tonight"). An entry is keyed by the template
+ * key, its ETag (version and text, so an edit never serves old output) and the values of
+ * the variables the template uses, in name order; variables it does not use (a recipient id,
+ * say) do not split entries. The hash is taken over that canonical form and equality
+ * compares it in full, so two variable sets can not share an entry by a hash collision.
+ *
+ * Off unless enabled, and bounded by max-size as an estimate of the bytes its keys and
+ * outputs take, least recently used out first. Templates saved with cache_rendered=false
+ * (personalized ones, where every output is different) are never cached, and neither are
+ * renders with missing variables, so those are still counted and reported every time.
+ */
+@Service
+public class RenderedOutputCache {
+
+    // Rough object, array and String headers per entry, on top of one byte per character
+    private static final int ENTRY_OVERHEAD = 160;
+    private static final int STRING_OVERHEAD = 40;
+
+    private final boolean enabled;
+    private final Cache<RenderKey, RenderResponseDto> outputs;
+
+    public RenderedOutputCache(MeterRegistry meterRegistry,
+                               @Value("${app.template.render.cache.enabled:false}") boolean enabled,
+                               @Value("${app.template.render.cache.max-size:64MB}") DataSize maxSize) {
+        this.enabled = enabled;
+        this.outputs = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .<RenderKey, RenderResponseDto>weigher(RenderedOutputCache::weigh)
+                .recordStats()
+                .build(), "rendered");
+        Gauge.builder("template.render.cache.size", outputs,
+                        cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Estimated bytes held by the rendered output cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The output for template and variables, rendered by render when it is not cached. An
+     * output with missing variables is returned but not kept.
+     */
+    RenderResponseDto get(CompiledNotification template, Map<String, String> variables,
+                          Supplier<RenderResponseDto> render) {
+        if (!enabled || !template.isOutputCacheable()) {
+            return render.get();
+        }
+        RenderKey key = new RenderKey(template, variables);
+        RenderResponseDto cached = outputs.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        RenderResponseDto rendered = render.get();
+        if (rendered.getMissingVariables() == null) {
+            outputs.put(key, rendered);
+        }
+        return rendered;
+    }
+
+    private static int weigh(RenderKey key, RenderResponseDto output) {
+        long bytes = ENTRY_OVERHEAD + key.weight() + weigh(output.getRenderedSubject()) + weigh(output.getRenderedBody())
+                + weigh(output.getRenderedImageUrl()) + weigh(output.getRenderedActionLink());
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long weigh(String value) {
+        return value != null ? STRING_OVERHEAD + value.length() : 0;
+    }
+
+    /**
+     * Template key and ETag, then the value of each variable the template uses, in the
+     * template's sorted name order (null for one not given); the names follow from the ETag.
+     */
+    private static final class RenderKey {
+
+        private final String templateKey;
+        private final String eTag;
+        private final String[] variables;
+        private final int hash;
+
+        private RenderKey(CompiledNotification template, Map<String, String> variables) {
+            this.templateKey = template.getTemplate().getTemplateKey();
+            this.eTag = template.getETag();
+            String[] names = template.getVariableNames();
+            this.variables = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                this.variables[i] = variables != null ? variables.get(names[i]) : null;
+            }
+            this.hash = 31 * (31 * templateKey.hashCode() + eTag.hashCode()) + Arrays.hashCode(this.variables);
+        }
+
+        private long weight() {
+            long bytes = weigh(templateKey) + weigh(eTag);
+            for (String value : variables) {
+                bytes += weigh(value);
+            }
+            return bytes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RenderKey key && hash == key.hash && templateKey.equals(key.templateKey)
+                    && eTag.equals(key.eTag) && Arrays.equals(variables, key.variables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.hng.templateservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long this instance took to get going, all measured from JVM start:
+ * template.startup.ready, template.startup.warm-up (the warm-up itself),
+ * template.startup.first-render, and template.startup.steady-state: when the mean render
+ * time per interval stopped moving by more than the tolerance for a few intervals in a row
+ * (the start of that run is reported). Each gauge reads NaN until its moment has come.
+ */
+@Service
+public class StartupMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupMetrics.class);
+
+    private final TemplateRenderService renderService;
+    private final Timer renderTimer;
+    private final Duration interval;
+    private final int minRenders;
+    private final double tolerance;
+    private final int intervals;
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    private final AtomicLong readyAt = new AtomicLong();
+    private final AtomicLong warmUpMillis = new AtomicLong(-1);
+    private final AtomicLong firstRenderAt = new AtomicLong();
+    private final AtomicLong steadyAt = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+    private long lastCount;
+    private double lastNanos;
+    private double lastMeanNanos;
+    private long stableSince;
+    private int stableIntervals;
+
+    public StartupMetrics(TemplateRenderService renderService,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.template.startup.steady-state.interval:5s}") Duration interval,
+                          @Value("${app.template.startup.steady-state.min-renders:20}") int minRenders,
+                          @Value("${app.template.startup.steady-state.tolerance:0.1}") double tolerance,
+                          @Value("${app.template.startup.steady-state.intervals:3}") int intervals) {
+        this.renderService = renderService;
+        this.renderTimer = meterRegistry.get("template.render.duration").timer();
+        this.interval = interval;
+        this.minRenders = minRenders;
+        this.tolerance = tolerance;
+        this.intervals = intervals;
+
+        sinceStart(meterRegistry, "template.startup.ready", "Time from JVM start until the application was ready", readyAt);
+        sinceStart(meterRegistry, "template.startup.first-render", "Time from JVM start until the first render request", firstRenderAt);
+        sinceStart(meterRegistry, "template.startup.steady-state", "Time from JVM start until the render time settled", steadyAt);
+        TimeGauge.builder("template.startup.warm-up", warmUpMillis, TimeUnit.MILLISECONDS,
+                        millis -> millis.get() < 0 ? Double.NaN : millis.get())
+                .description("Time spent warming up before the web server started")
+                .register(meterRegistry);
+    }
+
+    public void warmedUp(long millis) {
+        warmUpMillis.set(millis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyAt.set(System.currentTimeMillis());
+        logger.info("Ready {} ms after JVM start", readyAt.get() - jvmStartMillis);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "template-startup-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::check, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void check() {
+        try {
+            long firstRender = renderService.getFirstRenderAt();
+            if (firstRender != 0 && firstRenderAt.get() == 0) {
+                firstRenderAt.set(firstRender);
+                logger.info("First render request {} ms after JVM start", firstRender - jvmStartMillis);
+            }
+
+            long count = renderTimer.count();
+            double nanos = renderTimer.totalTime(TimeUnit.NANOSECONDS);
+            long renders = count - lastCount;
+            if (renders < minRenders) {
+                return;
+            }
+            double meanNanos = (nanos - lastNanos) / renders;
+            lastCount = count;
+            lastNanos = nanos;
+
+            if (lastMeanNanos > 0 && Math.abs(meanNanos - lastMeanNanos) <= tolerance * lastMeanNanos) {
+                stableIntervals++;
+            } else {
+                stableIntervals = 0;
+                stableSince = System.currentTimeMillis();
+            }
+            lastMeanNanos = meanNanos;
+
+            if (stableIntervals >= intervals) {
+                steadyAt.set(stableSince);
+                logger.info("Steady state {} ms after JVM start, at {} ms per render",
+                        stableSince - jvmStartMillis, String.format("%.2f", meanNanos / 1_000_000));
+                scheduler.shutdown();
+            }
+        } catch (Exception e) {
+            logger.warn("Startup metrics check failed: {}", e.getMessage());
+        }
+    }
+
+    private void sinceStart(MeterRegistry meterRegistry, String name, String description, AtomicLong at) {
+        TimeGauge.builder(name, at, TimeUnit.MILLISECONDS, millis -> millis.get() == 0 ? Double.NaN : millis.get() - jvmStartMillis)
+                .description(description)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,135 @@
+package com.hng.templateservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hng.templateservice.dto.ApiResponseDto;
+import com.hng.templateservice.dto.RenderRequestDto;
+import com.hng.templateservice.dto.RenderResponseDto;
+import com.hng.templateservice.models.NotificationTemplate;
+import com.hng.templateservice.repository.NotificationTemplateRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Gets the service ready for its first render requests before the web server starts
+ * taking them: this lifecycle runs in an earlier phase than the web server, which only
+ * starts once it returns.
+ *
+ * It runs a render of an in-memory template and the JSON round trip of a render request
+ * and response iterations times so the JIT has compiled them, then looks a template up a
+ * few times, which opens the connection pool and prepares the lookup query. A step that
+ * fails is logged and skipped; the whole warm-up gives up after the timeout.
+ */
+@Service
+@ConditionalOnProperty(name = "app.template.startup.warm-up.enabled", havingValue = "true", matchIfMissing = true)
+public class StartupWarmup implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private final NotificationTemplateRepository templateRepository;
+    private final TemplateRenderService renderService;
+    private final ObjectMapper objectMapper;
+    private final StartupMetrics startupMetrics;
+    private final Duration timeout;
+    private final int lookups;
+    private final int iterations;
+    private final String templateKey;
+
+    private volatile boolean running;
+    private long deadline;
+
+    public StartupWarmup(NotificationTemplateRepository templateRepository,
+                         TemplateRenderService renderService,
+                         ObjectMapper objectMapper,
+                         StartupMetrics startupMetrics,
+                         @Value("${app.template.startup.warm-up.timeout:30s}") Duration timeout,
+                         @Value("${app.template.startup.warm-up.lookups:5}") int lookups,
+                         @Value("${app.template.startup.warm-up.iterations:5000}") int iterations,
+                         @Value("${app.template.startup.warm-up.template-key:warm-up}") String templateKey) {
+        this.templateRepository = templateRepository;
+        this.renderService = renderService;
+        this.objectMapper = objectMapper;
+        this.startupMetrics = startupMetrics;
+        this.timeout = timeout;
+        this.lookups = lookups;
+        this.iterations = iterations;
+        this.templateKey = templateKey;
+    }
+
+    /** Before the web server, which starts in phase DEFAULT_PHASE - 1024. */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void start() {
+        long startedAt = System.currentTimeMillis();
+        deadline = startedAt + timeout.toMillis();
+        logger.info("Warming up before taking requests");
+
+        // In-process first: a database that is not there yet could use up the whole timeout
+        step("render", this::exerciseRenderPath);
+        step("database", () -> {
+            for (int i = 0; i < lookups; i++) {
+                templateRepository.optFindByTemplateKey(templateKey);
+            }
+        });
+
+        long took = System.currentTimeMillis() - startedAt;
+        startupMetrics.warmedUp(took);
+        logger.info("Warm-up finished in {} ms", took);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void step(String name, WarmUpStep step) {
+        if (System.currentTimeMillis() > deadline) {
+            logger.warn("Warm-up timed out; skipping {}", name);
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            step.run();
+            logger.info("Warm-up {} took {} ms", name, System.currentTimeMillis() - startedAt);
+        } catch (Exception e) {
+            logger.warn("Warm-up {} failed after {} ms: {}", name, System.currentTimeMillis() - startedAt, e.getMessage());
+        }
+    }
+
+    private void exerciseRenderPath() throws Exception {
+        NotificationTemplate template = new NotificationTemplate();
+        template.setTemplateKey(templateKey);
+        template.setSubjectTemplate("Hello {{name}}, you have {{count}} new messages");
+        template.setBodyTemplate("Open the app to read them, {{name}}.");
+
+        for (int i = 0; i < iterations; i++) {
+            String request = "{\"template_code\":\"" + templateKey + "\",\"notification_type\":\"push\","
+                    + "\"variables\":{\"name\":\"warm-up\",\"count\":\"" + i + "\"}}";
+            RenderRequestDto renderRequest = objectMapper.readValue(request, RenderRequestDto.class);
+            RenderResponseDto rendered = renderService.apply(template, renderRequest.getVariables());
+            objectMapper.writeValueAsString(ApiResponseDto.success("Template rendered successfully", rendered, null));
+        }
+    }
+
+    @FunctionalInterface
+    private interface WarmUpStep {
+
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,161 @@
+package com.hng.templateservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hng.templateservice.models.NotificationTemplate;
+import com.hng.templateservice.repository.NotificationTemplateRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ * Templates by key, compiled, so a render only goes to the database for a key it has not
+ * seen. Each entry carries the version it was loaded at: a create or update puts the saved
+ * template in, and an entry is only ever replaced by one of the same or a later version, so
+ * a slow load can not put back what an update has just replaced.
+ *
+ * The cache holds at most max-size templates. Entries are kept until TemplateChangeNotifier
+ * hears of a later version, or for at most ttl when that is set (for running without
+ * notifications). Unknown keys are not cached. The templates are preloaded after the
+ * warm-up and before the web server starts.
+ *
+ * Besides Caffeine's cache.* meters (name=templates), template.cache.hit.ratio is the share
+ * of lookups served from memory and template.cache.db.loads counts the ones that were not.
+ */
+@Service
+public class TemplateCache implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateCache.class);
+
+    private final NotificationTemplateRepository templateRepository;
+    private final Cache<String, CompiledNotification> templates;
+    private final int maxSize;
+    private final boolean preload;
+
+    // template.lookup.duration times the database reads only, so it is now the miss path
+    private final Timer lookupTimer;
+    private final Counter found;
+    private final Counter notFound;
+
+    private volatile boolean running;
+
+    public TemplateCache(NotificationTemplateRepository templateRepository, MeterRegistry meterRegistry,
+                         @Value("${app.template.cache.max-size:10000}") int maxSize,
+                         @Value("${app.template.cache.ttl:0}") Duration ttl,
+                         @Value("${app.template.cache.preload:true}") boolean preload) {
+        this.templateRepository = templateRepository;
+        this.maxSize = maxSize;
+        this.preload = preload;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats();
+        if (!ttl.isZero()) {
+            builder.expireAfterWrite(ttl);
+        }
+        this.templates = CaffeineCacheMetrics.monitor(meterRegistry,
+                builder.<String, CompiledNotification>build(), "templates");
+        this.lookupTimer = Timer.builder("template.lookup.duration")
+                .description("Time to load a template from the database")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.found = Counter.builder("template.cache.db.loads")
+                .description("Template lookups that went to the database")
+                .tag("result", "found")
+                .register(meterRegistry);
+        this.notFound = Counter.builder("template.cache.db.loads")
+                .description("Template lookups that went to the database")
+                .tag("result", "not_found")
+                .register(meterRegistry);
+        Gauge.builder("template.cache.hit.ratio", templates, cache -> cache.stats().hitRate())
+                .description("Share of template lookups served from memory")
+                .register(meterRegistry);
+    }
+
+    /** After the warm-up (DEFAULT_PHASE - 4096), before the web server (DEFAULT_PHASE - 1024). */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 2048;
+    }
+
+    @Override
+    public void start() {
+        if (preload) {
+            long startedAt = System.currentTimeMillis();
+            try {
+                templateRepository.findAll(PageRequest.of(0, maxSize)).forEach(this::put);
+                logger.info("Preloaded {} templates in {} ms", templates.estimatedSize(),
+                        System.currentTimeMillis() - startedAt);
+            } catch (Exception e) {
+                logger.warn("Template preload failed after {} ms, loading on first use: {}",
+                        System.currentTimeMillis() - startedAt, e.getMessage());
+            }
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** The template for key, from memory or else the database; null when there is none. */
+    CompiledNotification get(String templateKey) {
+        if (templateKey == null) {
+            return null;
+        }
+        return templates.get(templateKey, this::load);
+    }
+
+    /** Caches a template just saved, unless a later version is already cached. */
+    public void put(NotificationTemplate template) {
+        if (template.getTemplateKey() == null) {
+            return;
+        }
+        CompiledNotification fresh = new CompiledNotification(template);
+        templates.asMap().merge(template.getTemplateKey(), fresh,
+                (cached, loaded) -> loaded.getVersion() >= cached.getVersion() ? loaded : cached);
+    }
+
+    /** Drops key if the cached template is older than version; true if it did. */
+    boolean evictOlderThan(String templateKey, int version) {
+        boolean[] evicted = new boolean[1];
+        // computeIfPresent waits for a load of the key in progress, so that is dropped too
+        templates.asMap().computeIfPresent(templateKey, (key, cached) -> {
+            evicted[0] = cached.getVersion() < version;
+            return evicted[0] ? null : cached;
+        });
+        return evicted[0];
+    }
+
+    void invalidateAll() {
+        templates.invalidateAll();
+    }
+
+    private CompiledNotification load(String templateKey) {
+        NotificationTemplate template = lookupTimer.record(() -> templateRepository.optFindByTemplateKey(templateKey))
+                .orElse(null);
+        if (template == null) {
+            notFound.increment();
+            return null;
+        }
+        found.increment();
+        return new CompiledNotification(template);
+    }
+}
@@ -0,0 +1,220 @@
+package com.hng.templateservice.service;
+
+import com.hng.templateservice.models.NotificationTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the template caches of all replicas in step through Postgres LISTEN/NOTIFY.
+ *
+ * A create or update sends "version:templateKey" on the channel from inside its own
+ * transaction, so Postgres delivers it only once the change is committed, and this replica
+ * caches the saved template after the commit. Every replica keeps a connection of its own
+ * (outside the pool) listening on the channel and evicts a key when it hears of a later
+ * version than the one it holds; the next render loads it again.
+ *
+ * Notifications sent while the connection is down are lost, so after a reconnect the whole
+ * cache is dropped. Startup waits up to reconnect-delay for the first LISTEN before the
+ * cache is preloaded; if it takes longer, that first LISTEN counts as a reconnect.
+ */
+@Service
+public class TemplateChangeNotifier implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplateChangeNotifier.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TemplateCache templateCache;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean enabled;
+    private final String channel;
+    private final Duration pollInterval;
+    private final Duration reconnectDelay;
+
+    private final Counter published;
+    private final Counter received;
+    private final Counter evicted;
+    private final Counter reconnects;
+
+    private final CountDownLatch listening = new CountDownLatch(1);
+    private volatile boolean running;
+    private volatile boolean preloadedFirst;
+    private Thread listener;
+
+    public TemplateChangeNotifier(JdbcTemplate jdbcTemplate,
+                                  TemplateCache templateCache,
+                                  DataSourceProperties dataSourceProperties,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.template.cache.notify.enabled:true}") boolean enabled,
+                                  @Value("${app.template.cache.notify.channel:template_changes}") String channel,
+                                  @Value("${app.template.cache.notify.poll-interval:10s}") Duration pollInterval,
+                                  @Value("${app.template.cache.notify.reconnect-delay:5s}") Duration reconnectDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.templateCache = templateCache;
+        this.dataSourceProperties = dataSourceProperties;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.pollInterval = pollInterval;
+        this.reconnectDelay = reconnectDelay;
+        this.published = Counter.builder("template.cache.notify.published")
+                .description("Template change notifications sent")
+                .register(meterRegistry);
+        this.received = Counter.builder("template.cache.notify.received")
+                .description("Template change notifications received, including this replica's own")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("template.cache.notify.evicted")
+                .description("Cached templates dropped because a later version was saved")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("template.cache.notify.reconnects")
+                .description("Times the listen connection was opened again, dropping the whole cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Announces a saved template; call it inside the transaction that saved it. The template
+     * is cached here once that transaction commits.
+     */
+    public void publish(NotificationTemplate template) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    templateCache.put(template);
+                }
+            });
+        } else {
+            templateCache.put(template);
+        }
+        if (enabled) {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", channel,
+                    CompiledNotification.versionOf(template) + ":" + template.getTemplateKey());
+            published.increment();
+        }
+    }
+
+    /** After the warm-up (DEFAULT_PHASE - 4096), before the cache preload (DEFAULT_PHASE - 2048). */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 3072;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!enabled) {
+            return;
+        }
+        listener = new Thread(this::listen, "template-change-listener");
+        listener.setDaemon(true);
+        listener.start();
+        try {
+            if (!listening.await(reconnectDelay.toMillis(), TimeUnit.MILLISECONDS)) {
+                preloadedFirst = true;
+                logger.warn("Not listening for template changes yet; the cache is dropped once it is");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore || preloadedFirst) {
+                    // Whatever changed while we were not listening is unknown
+                    templateCache.invalidateAll();
+                    reconnects.increment();
+                    logger.info("Listening on {} again; template cache cleared", channel);
+                } else {
+                    logger.info("Listening for template changes on {}", channel);
+                }
+                connectedBefore = true;
+                listening.countDown();
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollInterval.toMillis());
+                    if (notifications == null) {
+                        // Nothing in a whole interval; make sure the connection is still there
+                        if (!connection.isValid(5)) {
+                            throw new IllegalStateException("listen connection is no longer valid");
+                        }
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        onChange(notification.getParameter());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Template change listener lost its connection, retrying in {}: {}",
+                        reconnectDelay, e.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onChange(String payload) {
+        received.increment();
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            logger.warn("Ignoring template change notification {}", payload);
+            return;
+        }
+        String templateKey = payload.substring(separator + 1);
+        int version;
+        try {
+            version = Integer.parseInt(payload.substring(0, separator));
+        } catch (NumberFormatException e) {
+            // Not ours to understand; dropping the key is always safe
+            version = Integer.MAX_VALUE;
+        }
+        if (templateCache.evictOlderThan(templateKey, version)) {
+            evicted.increment();
+            logger.info("Template {} changed to version {}; evicted", templateKey, version);
+        }
+    }
+}
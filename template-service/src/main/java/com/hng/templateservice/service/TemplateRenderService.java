@@ -1,60 +1,137 @@
 package com.hng.templateservice.service;
 
+import com.hng.templateservice.dto.CompiledTemplateDto;
 import com.hng.templateservice.dto.RenderRequestDto;
 import com.hng.templateservice.dto.RenderResponseDto;
+import com.hng.templateservice.dto.TemplateDefinitionDto;
 import com.hng.templateservice.models.NotificationTemplate;
-import com.hng.templateservice.repository.NotificationTemplateRepository;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-@RequiredArgsConstructor
 public class TemplateRenderService {
 
-    private final NotificationTemplateRepository templateRepository;
+    private final TemplateCache templateCache;
+    private final RenderedOutputCache outputCache;
     private final Logger logger = LoggerFactory.getLogger(TemplateRenderService.class);
 
+    // template.render.duration covers the whole render; TemplateCache times the DB reads
+    private final Timer renderTimer;
+    private final Counter missingVariables;
+    private final AtomicLong firstRenderAt = new AtomicLong();
+
+    // When set, a render with missing variables fails instead of leaving the slots empty
+    private final boolean strictVariables;
+
+    public TemplateRenderService(TemplateCache templateCache, RenderedOutputCache outputCache, MeterRegistry meterRegistry,
+                                 @Value("${app.template.render.strict-variables:false}") boolean strictVariables) {
+        this.templateCache = templateCache;
+        this.outputCache = outputCache;
+        this.strictVariables = strictVariables;
+        this.renderTimer = Timer.builder("template.render.duration")
+                .description("Time to render a template, including the lookup")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.missingVariables = Counter.builder("template.render.missing.variables")
+                .description("Placeholders rendered without a value")
+                .register(meterRegistry);
+    }
+
     public RenderResponseDto renderTemplate(RenderRequestDto request) {
+        if (firstRenderAt.get() == 0) {
+            firstRenderAt.compareAndSet(0, System.currentTimeMillis());
+        }
+        return renderTimer.record(() -> render(request));
+    }
+
+    /** Epoch millis of the first render request, 0 until then. */
+    public long getFirstRenderAt() {
+        return firstRenderAt.get();
+    }
+
+    private RenderResponseDto render(RenderRequestDto request) {
         logger.info("Rendering template for key: {} and type: {}", request.getTemplateKey(), request.getNotificationType());
-        // 1. Fetch the template from the database
+        // 1. Fetch the template, from the cache or else the database
         // once you send template code, no need for type
 
-        NotificationTemplate template = templateRepository
-                .optFindByTemplateKey(request.getTemplateKey())
-                .orElseThrow(() -> new RuntimeException("Template not found for key: "
-                        + request.getTemplateKey()));
+        CompiledNotification template = templateCache.get(request.getTemplateKey());
+        if (template == null) {
+            throw new RuntimeException("Template not found for key: " + request.getTemplateKey());
+        }
 
         // NotificationTemplate template = templateRepository
         //         .findByTemplateKeyAndType(request.getTemplateKey(), request.getNotificationType())
         //         .orElseThrow(() -> new RuntimeException("Template not found for key: "
         //                 + request.getTemplateKey() + " and type: " + request.getNotificationType()));
 
-        String subject = template.getSubjectTemplate();
-        String body = template.getBodyTemplate();
-
-        // 2. Loop through the variables and replace placeholders
-        if (request.getVariables() != null) {
-            for (Map.Entry<String, String> entry : request.getVariables().entrySet()) {
-                String placeholder = "{{" + entry.getKey() + "}}";
-                String value = entry.getValue();
-
-                if (subject != null) {
-                    subject = subject.replace(placeholder, value);
-                }
-                // if (body != null) {
-                //     body = body.replace(placeholder, value);
-                // }
+        return renderCached(template, request.getVariables());
+    }
+
+    /** Fills in a cached template, or reuses an identical earlier render when the output cache has one. */
+    RenderResponseDto renderCached(CompiledNotification template, Map<String, String> variables) {
+        return outputCache.get(template, variables, () -> apply(template, variables));
+    }
+
+    /**
+     * The compiled form of a template, for services that render it themselves; null when
+     * there is no such template. Rendering it as CompiledTemplate does gives the same result.
+     */
+    public TemplateDefinitionDto definition(String templateKey) {
+        CompiledNotification template = templateCache.get(templateKey);
+        if (template == null) {
+            return null;
+        }
+        return new TemplateDefinitionDto(template.getTemplate().getTemplateKey(), template.getVersion(),
+                definition(template.getSubject()), definition(template.getBody()),
+                definition(template.getImageUrl()), definition(template.getActionLink()), template.getETag());
+    }
+
+    private static CompiledTemplateDto definition(CompiledTemplate template) {
+        return template != null ? new CompiledTemplateDto(template.getLiterals(), template.getNames()) : null;
+    }
+
+    /** Fills in a template that is not cached; run by the startup warm-up on a template of its own. */
+    RenderResponseDto apply(NotificationTemplate template, Map<String, String> variables) {
+        return apply(new CompiledNotification(template), variables);
+    }
+
+    private RenderResponseDto apply(CompiledNotification compiledTemplate, Map<String, String> variables) {
+        // 2. One pass per field over the compiled template; missing variables render empty
+        Set<String> missing = new LinkedHashSet<>();
+        RenderResponseDto rendered = new RenderResponseDto(
+                render(compiledTemplate.getSubject(), variables, missing),
+                render(compiledTemplate.getBody(), variables, missing),
+                render(compiledTemplate.getImageUrl(), variables, missing),
+                render(compiledTemplate.getActionLink(), variables, missing),
+                missing.isEmpty() ? null : new ArrayList<>(missing));
+
+        if (!missing.isEmpty()) {
+            String templateKey = compiledTemplate.getTemplate().getTemplateKey();
+            missingVariables.increment(missing.size());
+            if (strictVariables) {
+                throw new RuntimeException("Missing variables for template " + templateKey + ": " + missing);
             }
+            logger.warn("Template {} rendered without variables {}", templateKey, missing);
         }
 
         // 3. Return the final rendered strings
-        return new RenderResponseDto(subject, body);
+        return rendered;
+    }
+
+    private static String render(CompiledTemplate template, Map<String, String> variables, Set<String> missing) {
+        return template != null ? template.render(variables, missing) : null;
     }
-}
\ No newline at end of file
+}
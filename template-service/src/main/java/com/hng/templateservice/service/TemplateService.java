@@ -5,14 +5,17 @@ import com.hng.templateservice.models.NotificationTemplate;
 import com.hng.templateservice.repository.NotificationTemplateRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
 public class TemplateService {
 
     private final NotificationTemplateRepository templateRepo;
+    private final TemplateChangeNotifier templateChanges;
 
     // save template
+    @Transactional
     public NotificationTemplate createTemplate(NotificationRequestdto tempReq){
 
         NotificationTemplate template = new NotificationTemplate();
@@ -23,9 +26,42 @@ public class TemplateService {
         template.setImageUrl(tempReq.getImageUrl());
         template.setActionLink(tempReq.getActionLink());
         template.setType(tempReq.getType());
-        template.setVersion(tempReq.getVersion());
+        template.setVersion(tempReq.getVersion() != null ? tempReq.getVersion() : 1);
+        template.setCacheRendered(tempReq.getCacheRendered());
 
-        return templateRepo.save(template);
+        NotificationTemplate saved = templateRepo.save(template);
+        templateChanges.publish(saved);
+        return saved;
+    }
+
+    // update template; the version goes up by one unless a later one is given. The row is
+    // locked while the version is read and bumped, so two concurrent updates can not both
+    // save the same version (replicas only drop their cached copy for a later version)
+    @Transactional
+    public NotificationTemplate updateTemplate(String templateKey, NotificationRequestdto tempReq){
+
+        if (templateKey == null || templateKey.isEmpty()){
+            throw new RuntimeException("Template key is not applicable");
+        }
+        NotificationTemplate template = templateRepo.findForUpdateByTemplateKey(templateKey);
+        if (template == null){
+            return null;
+        }
+
+        int current = template.getVersion() != null ? template.getVersion() : 0;
+        int requested = tempReq.getVersion() != null ? tempReq.getVersion() : 0;
+
+        template.setSubjectTemplate(tempReq.getSubjectTemplate());
+        template.setBodyTemplate(tempReq.getBodyTemplate());
+        template.setImageUrl(tempReq.getImageUrl());
+        template.setActionLink(tempReq.getActionLink());
+        template.setType(tempReq.getType());
+        template.setCacheRendered(tempReq.getCacheRendered());
+        template.setVersion(Math.max(current + 1, requested));
+
+        NotificationTemplate saved = templateRepo.save(template);
+        templateChanges.publish(saved);
+        return saved;
     }
 
     // find by templateKey
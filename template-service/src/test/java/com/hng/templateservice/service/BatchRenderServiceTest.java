@@ -0,0 +1,150 @@
+package com.hng.templateservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hng.templateservice.models.NotificationTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchRenderServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TemplateCache templateCache = mock(TemplateCache.class);
+    private BatchRenderService batchRenderService;
+
+    @BeforeEach
+    void setUp() {
+        NotificationTemplate template = new NotificationTemplate();
+        template.setTemplateKey("welcome");
+        template.setSubjectTemplate("Hi {{name}}");
+        template.setBodyTemplate("Welcome to {{app}}");
+        when(templateCache.get("welcome")).thenReturn(new CompiledNotification(template));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Strict, so a set with a missing variable is an error line
+        TemplateRenderService renderService = new TemplateRenderService(templateCache,
+                new RenderedOutputCache(meterRegistry, false, DataSize.ofMegabytes(1)), meterRegistry, true);
+        batchRenderService = new BatchRenderService(templateCache, renderService, objectMapper, meterRegistry, 2);
+    }
+
+    @Test
+    void rendersEachNdjsonLineInOrder() throws IOException {
+        List<JsonNode> lines = render(true, """
+                {"name": "Ada", "app": "Pulse"}
+
+                {"name": "Bob", "app": "Pulse", "unused": "x"}
+                """);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0).get("index").asLong()).isZero();
+        assertThat(lines.get(0).get("rendered_subject").asText()).isEqualTo("Hi Ada");
+        assertThat(lines.get(0).get("rendered_body").asText()).isEqualTo("Welcome to Pulse");
+        assertThat(lines.get(0).has("error")).isFalse();
+        assertThat(lines.get(1).get("index").asLong()).isEqualTo(1);
+        assertThat(lines.get(1).get("rendered_subject").asText()).isEqualTo("Hi Bob");
+    }
+
+    @Test
+    void badNdjsonLinesGetErrorsAndTheRestCarryOn() throws IOException {
+        List<JsonNode> lines = render(true, """
+                {"name": "Ada", "app": "Pulse"}
+                {"name": "Ada",
+                [1, 2]
+                {"name": {"first": "Ada"}, "app": "Pulse"}
+                {"name": "Ada"}
+                {"name": "Cy", "app": "Pulse"}
+                """);
+
+        assertThat(lines).extracting(line -> line.get("index").asLong()).containsExactly(0L, 1L, 2L, 3L, 4L, 5L);
+        assertThat(lines.get(0).has("error")).isFalse();
+        assertThat(lines.get(1).get("error").asText()).startsWith("Invalid JSON");
+        assertThat(lines.get(2).get("error").asText()).isEqualTo("Expected an object of variables");
+        assertThat(lines.get(3).get("error").asText()).startsWith("Invalid variables");
+        assertThat(lines.get(4).get("error").asText()).contains("Missing variables").contains("app");
+        assertThat(lines.get(4).has("rendered_subject")).isFalse();
+        assertThat(lines.get(5).get("rendered_subject").asText()).isEqualTo("Hi Cy");
+    }
+
+    @Test
+    void badArrayItemsGetErrorsAndTheRestCarryOn() throws IOException {
+        List<JsonNode> lines = render(false, """
+                [{"name": "Ada", "app": "Pulse"}, "Ada", {"name": "Ada"}, {"name": "Bob", "app": "Pulse"}]
+                """);
+
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(1).get("error").asText()).isEqualTo("Expected an object of variables");
+        assertThat(lines.get(2).get("error").asText()).contains("Missing variables");
+        assertThat(lines.get(3).get("index").asLong()).isEqualTo(3);
+        assertThat(lines.get(3).get("rendered_subject").asText()).isEqualTo("Hi Bob");
+    }
+
+    @Test
+    void malformedJsonInAnArrayEndsTheBatchWithAnErrorLine() throws IOException {
+        List<JsonNode> lines = render(false, """
+                [{"name": "Ada", "app": "Pulse"}, {"name": }, {"name": "Bob", "app": "Pulse"}]
+                """);
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0).get("rendered_subject").asText()).isEqualTo("Hi Ada");
+        assertThat(lines.get(1).get("index").asLong()).isEqualTo(1);
+        assertThat(lines.get(1).get("error").asText()).startsWith("Invalid JSON");
+    }
+
+    @Test
+    void readsMapsWithoutAnArrayAroundThem() throws IOException {
+        List<JsonNode> lines = render(false, """
+                {"name": "Ada", "app": "Pulse"} {"name": "Bob", "app": "Pulse"}
+                """);
+
+        assertThat(lines).extracting(line -> line.get("rendered_subject").asText()).containsExactly("Hi Ada", "Hi Bob");
+    }
+
+    @Test
+    void emptyInputWritesNothing() throws IOException {
+        assertThat(output(false, "[]")).isEmpty();
+        assertThat(output(true, "")).isEmpty();
+    }
+
+    @Test
+    void unknownTemplateFailsBeforeWritingAnything() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> batchRenderService.render("missing", input("[]"), false, output))
+                .hasMessageContaining("Template not found");
+        assertThat(output.size()).isZero();
+    }
+
+    private List<JsonNode> render(boolean ndjson, String body) throws IOException {
+        String output = output(ndjson, body);
+        assertThat(output).endsWith("\n");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private String output(boolean ndjson, String body) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        batchRenderService.render("welcome", input(body), ndjson, output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayInputStream input(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,131 @@
+package com.hng.templateservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledTemplateTest {
+
+    @Test
+    void nullSourceCompilesToNull() {
+        assertThat(CompiledTemplate.compile(null)).isNull();
+    }
+
+    @Test
+    void textWithoutSlotsIsOneLiteral() {
+        CompiledTemplate template = CompiledTemplate.compile("No placeholders here");
+
+        assertThat(template.getLiterals()).containsExactly("No placeholders here");
+        assertThat(template.getNames()).isEmpty();
+        assertThat(template.render(Map.of(), new ArrayList<>())).isEqualTo("No placeholders here");
+    }
+
+    @Test
+    void emptySourceRendersEmpty() {
+        CompiledTemplate template = CompiledTemplate.compile("");
+
+        assertThat(template.getLiterals()).containsExactly("");
+        assertThat(template.render(Map.of(), new ArrayList<>())).isEmpty();
+    }
+
+    @Test
+    void splitsIntoLiteralsAndNames() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{name}}, your {{item}} shipped.");
+
+        assertThat(template.getLiterals()).containsExactly("Hi ", ", your ", " shipped.");
+        assertThat(template.getNames()).containsExactly("name", "item");
+        assertThat(template.render(Map.of("name", "Ada", "item", "order"), new ArrayList<>()))
+                .isEqualTo("Hi Ada, your order shipped.");
+    }
+
+    @Test
+    void ignoresWhitespaceInsideTheBraces() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{ name }} and {{\tother\n}}");
+
+        assertThat(template.getNames()).containsExactly("name", "other");
+        assertThat(template.render(Map.of("name", "Ada", "other", "Bob"), new ArrayList<>()))
+                .isEqualTo("Hi Ada and Bob");
+    }
+
+    @Test
+    void adjacentSlotsAndSlotsAtTheEdges() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}}{{b}}");
+
+        assertThat(template.getLiterals()).containsExactly("", "", "");
+        assertThat(template.render(Map.of("a", "1", "b", "2"), new ArrayList<>())).isEqualTo("12");
+    }
+
+    @Test
+    void emptyBracesAreKeptAsText() {
+        CompiledTemplate template = CompiledTemplate.compile("a {{}} b {{  }} c {{name}}");
+
+        assertThat(template.getNames()).containsExactly("name");
+        assertThat(template.render(Map.of("name", "x"), new ArrayList<>())).isEqualTo("a {{}} b {{  }} c x");
+    }
+
+    @Test
+    void unclosedBracesAreKeptAsText() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{name}}, see {{link");
+
+        assertThat(template.getNames()).containsExactly("name");
+        assertThat(template.getLiterals()).containsExactly("Hi ", ", see {{link");
+        assertThat(template.render(Map.of("name", "Ada"), new ArrayList<>())).isEqualTo("Hi Ada, see {{link");
+    }
+
+    @Test
+    void closingBracesAloneAreText() {
+        CompiledTemplate template = CompiledTemplate.compile("}} {{name}} }}");
+
+        assertThat(template.getNames()).containsExactly("name");
+        assertThat(template.render(Map.of("name", "x"), new ArrayList<>())).isEqualTo("}} x }}");
+    }
+
+    @Test
+    void missingVariablesRenderEmptyAndAreReportedPerSlot() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}}-{{b}}-{{a}}");
+        List<String> missing = new ArrayList<>();
+
+        assertThat(template.render(Map.of("b", "2"), missing)).isEqualTo("-2-");
+        assertThat(missing).containsExactly("a", "a");
+    }
+
+    @Test
+    void nullVariablesLeaveEverySlotMissing() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}} and {{b}}");
+        List<String> missing = new ArrayList<>();
+
+        assertThat(template.render(null, missing)).isEqualTo(" and ");
+        assertThat(missing).containsExactly("a", "b");
+    }
+
+    @Test
+    void valuesAreNotExpandedAgain() {
+        CompiledTemplate template = CompiledTemplate.compile("{{a}}");
+
+        assertThat(template.render(Map.of("a", "{{b}}", "b", "no"), new ArrayList<>())).isEqualTo("{{b}}");
+    }
+
+    // push-service's LocalTemplateTest renders these compiled forms and expects the same output
+    @Test
+    void compilesTheFormsPushServiceRendersFrom() {
+        Map<String, String> variables = Map.of("name", "Ada", "item", "order", "a", "1", "b", "{{b}}", "image", "box");
+
+        CompiledTemplate subject = CompiledTemplate.compile("Hi {{ name }}, your {{item}} shipped");
+        CompiledTemplate body = CompiledTemplate.compile("{{a}}{{b}} {{}} see {{link");
+        CompiledTemplate imageUrl = CompiledTemplate.compile("https://cdn/{{ image }}.png");
+
+        assertThat(subject.getLiterals()).containsExactly("Hi ", ", your ", " shipped");
+        assertThat(subject.getNames()).containsExactly("name", "item");
+        assertThat(body.getLiterals()).containsExactly("", "", " {{}} see {{link");
+        assertThat(body.getNames()).containsExactly("a", "b");
+        assertThat(imageUrl.getLiterals()).containsExactly("https://cdn/", ".png");
+        assertThat(imageUrl.getNames()).containsExactly("image");
+        assertThat(subject.render(variables, new ArrayList<>())).isEqualTo("Hi Ada, your order shipped");
+        assertThat(body.render(variables, new ArrayList<>())).isEqualTo("1{{b}} {{}} see {{link");
+        assertThat(imageUrl.render(variables, new ArrayList<>())).isEqualTo("https://cdn/box.png");
+    }
+}
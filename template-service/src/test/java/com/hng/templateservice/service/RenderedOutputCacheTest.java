@@ -0,0 +1,132 @@
+package com.hng.templateservice.service;
+
+import com.hng.templateservice.dto.RenderResponseDto;
+import com.hng.templateservice.models.NotificationTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RenderedOutputCacheTest {
+
+    private final RenderedOutputCache cache =
+            new RenderedOutputCache(new SimpleMeterRegistry(), true, DataSize.ofMegabytes(1));
+    private final AtomicInteger renders = new AtomicInteger();
+
+    @Test
+    void equalVariablesShareAnEntry() {
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+
+        RenderResponseDto first = get(template, Map.of("name", "Ada"));
+        RenderResponseDto second = get(template, new HashMap<>(Map.of("name", "Ada")));
+
+        assertThat(second).isSameAs(first);
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    void variablesTheTemplateDoesNotUseDoNotSplitEntries() {
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+
+        get(template, Map.of("name", "Ada", "recipient_id", "1"));
+        get(template, Map.of("name", "Ada", "recipient_id", "2"));
+
+        assertThat(renders).hasValue(1);
+    }
+
+    @Test
+    void differentValuesAreDifferentEntries() {
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+
+        assertThat(get(template, Map.of("name", "Ada")).getRenderedSubject()).isEqualTo("Hi Ada");
+        assertThat(get(template, Map.of("name", "Bob")).getRenderedSubject()).isEqualTo("Hi Bob");
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void valuesWithTheSameHashAreDifferentEntries() {
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        assertThat(get(template, Map.of("name", "Aa")).getRenderedSubject()).isEqualTo("Hi Aa");
+        assertThat(get(template, Map.of("name", "BB")).getRenderedSubject()).isEqualTo("Hi BB");
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void templateKeyAndETagArePartOfTheKey() {
+        Map<String, String> variables = Map.of("name", "Ada");
+
+        get(compile("welcome", 1, "Hi {{name}}"), variables);
+        get(compile("greeting", 1, "Hi {{name}}"), variables);
+        get(compile("welcome", 2, "Hi {{name}}"), variables);
+        RenderResponseDto edited = get(compile("welcome", 2, "Hello {{name}}"), variables);
+
+        assertThat(edited.getRenderedSubject()).isEqualTo("Hello Ada");
+        assertThat(renders).hasValue(4);
+    }
+
+    @Test
+    void outputsWithMissingVariablesAreNotKept() {
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+
+        assertThat(get(template, Map.of()).getMissingVariables()).containsExactly("name");
+        get(template, Map.of());
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void templatesSavedWithoutCachingAreAlwaysRendered() {
+        NotificationTemplate saved = template("welcome", 1, "Hi {{name}}");
+        saved.setCacheRendered(false);
+        CompiledNotification template = new CompiledNotification(saved);
+
+        get(template, Map.of("name", "Ada"));
+        get(template, Map.of("name", "Ada"));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    @Test
+    void rendersEveryTimeWhenDisabled() {
+        RenderedOutputCache disabled = new RenderedOutputCache(new SimpleMeterRegistry(), false, DataSize.ofMegabytes(1));
+        CompiledNotification template = compile("welcome", 1, "Hi {{name}}");
+
+        disabled.get(template, Map.of("name", "Ada"), () -> render(template, Map.of("name", "Ada")));
+        disabled.get(template, Map.of("name", "Ada"), () -> render(template, Map.of("name", "Ada")));
+
+        assertThat(renders).hasValue(2);
+    }
+
+    private RenderResponseDto get(CompiledNotification template, Map<String, String> variables) {
+        return cache.get(template, variables, () -> render(template, variables));
+    }
+
+    private RenderResponseDto render(CompiledNotification template, Map<String, String> variables) {
+        renders.incrementAndGet();
+        List<String> missing = new ArrayList<>();
+        String subject = template.getSubject().render(variables, missing);
+        return new RenderResponseDto(subject, null, null, null, missing.isEmpty() ? null : missing);
+    }
+
+    private static CompiledNotification compile(String key, int version, String subject) {
+        return new CompiledNotification(template(key, version, subject));
+    }
+
+    private static NotificationTemplate template(String key, int version, String subject) {
+        NotificationTemplate template = new NotificationTemplate();
+        template.setTemplateKey(key);
+        template.setVersion(version);
+        template.setSubjectTemplate(subject);
+        template.setBodyTemplate("");
+        return template;
+    }
+}
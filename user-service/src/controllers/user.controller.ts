@@ -37,9 +37,16 @@ export class UserController {
         }
 
         @Get()
-        async get_all_users(@Query('page') page: number = 1, @Query('limit') limit: number = 10) {
+        async get_all_users(
+                @Query('page') page: number = 1,
+                @Query('limit') limit: number = 10,
+                @Query('after') after?: string,
+        ) {
                 try {
-                        const result = await this.user_service.get_all_users(page, limit);
+                        // ?after=<id> (empty for the first page) walks users in id order with a cursor, for bulk readers
+                        const result = after !== undefined
+                                ? await this.user_service.get_users_after(after, Number(limit))
+                                : await this.user_service.get_all_users(page, limit);
                         return {
                                 success: true,
                                 data: result.users,
@@ -1,6 +1,6 @@
 import { Injectable, NotFoundException, BadRequestException } from '@nestjs/common';
 import { InjectRepository } from '@nestjs/typeorm';
-import { Repository } from 'typeorm';
+import { MoreThan, Repository } from 'typeorm';
 import { User } from '../entities/user.entity';
 import { UserPreference } from '../entities/user-preference.entity';
 import { CreateUserDto } from '../dtos/create-user.dto';
@@ -109,6 +109,7 @@ export class UserService {
                 const skip = (page - 1) * limit;
                 const [users, total] = await this.user_repository.findAndCount({
                         relations: ['preferences'],
+                        order: { id: 'ASC' },
                         skip,
                         take: limit,
                 });
@@ -126,6 +127,27 @@ export class UserService {
                 };
         }
 
+        /**
+         * Keyset page of users with id greater than `after`, in id order. Unlike page/limit it
+         * stays stable while users are added or removed, and does not get slower deep into the table.
+         */
+        async get_users_after(after: string, limit: number = 10): Promise<{ users: User[]; meta: any }> {
+                const users = await this.user_repository.find({
+                        relations: ['preferences'],
+                        where: after ? { id: MoreThan(after) } : {},
+                        order: { id: 'ASC' },
+                        take: limit,
+                });
+
+                return {
+                        users,
+                        meta: {
+                                limit,
+                                next_cursor: users.length === limit ? users[users.length - 1].id : null,
+                        },
+                };
+        }
+
         async validate_user_password(email: string, password: string): Promise<User> {
                 const user = await this.get_user_by_email(email);
                 const is_valid = await user.validate_password(password);